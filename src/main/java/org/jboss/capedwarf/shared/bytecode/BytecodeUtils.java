@@ -26,6 +26,9 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javassist.util.proxy.MethodFilter;
 import javassist.util.proxy.MethodHandler;
@@ -35,6 +38,12 @@ import javassist.util.proxy.ProxyFactory;
 /**
  * Bytecode hacks.
  *
+ * Public api of shared, for the other Capedwarf modules; url connections no longer use it,
+ * see CapedwarfURLConnectionSupport.
+ *
+ * Proxy classes and their constructors are cached per expected class, see #PROXY_TYPES,
+ * unless that would pin another classloader.
+ *
  * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
  */
 public final class BytecodeUtils {
@@ -45,6 +54,22 @@ public final class BytecodeUtils {
         }
     };
 
+    /**
+     * Generated proxy types, per expected class.
+     *
+     * ClassValue ties the cache to the expected class, which also defines the proxy's classloader,
+     * so it doesn't keep undeployed apps' classloaders alive -- unlike a map keyed by classloader,
+     * where the cached proxy class would strongly reference its own key.
+     * That only holds if the key's super class and interfaces come from the same classloader (or the bootstrap one),
+     * e.g. a JDK expected class with an app's interface would pin the app; such proxies are not cached here,
+     * javassist's own (weak) proxy cache still applies to them.
+     */
+    private static final ClassValue<ConcurrentMap<ProxyKey, ProxyType>> PROXY_TYPES = new ClassValue<ConcurrentMap<ProxyKey, ProxyType>>() {
+        protected ConcurrentMap<ProxyKey, ProxyType> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
     public static <T> T proxy(Class<T> expected, MethodHandler handler) {
         return proxy(expected, handler, null, null);
     }
@@ -66,29 +91,69 @@ public final class BytecodeUtils {
         if (handler == null)
             throw new IllegalArgumentException("Null method handler!");
 
+        final ProxyType proxyType = getProxyType(expected, interfaces, superClass, FINALIZE_FILTER);
+        try {
+            Proxy proxy = (Proxy) proxyType.getConstructor(paramTypes).newInstance(args);
+            proxy.setHandler(handler);
+            return expected.cast(proxy);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static ProxyType getProxyType(Class<?> expected, Class<?>[] interfaces, Class<?> superClass, MethodFilter filter) {
+        if (isCacheable(expected, superClass, interfaces) == false) {
+            return createProxyType(expected, interfaces, superClass, filter);
+        }
+        final ConcurrentMap<ProxyKey, ProxyType> types = PROXY_TYPES.get(expected);
+        final ProxyKey key = new ProxyKey(superClass, interfaces, filter);
+        ProxyType proxyType = types.get(key);
+        if (proxyType == null) {
+            proxyType = createProxyType(expected, interfaces, superClass, filter);
+            ProxyType previous = types.putIfAbsent(key.copy(), proxyType);
+            if (previous != null) {
+                proxyType = previous;
+            }
+        }
+        return proxyType;
+    }
+
+    private static ProxyType createProxyType(Class<?> expected, Class<?>[] interfaces, Class<?> superClass, MethodFilter filter) {
         final ProxyFactory factory = new InternalProxyFactory(expected.getClassLoader());
-        factory.setFilter(BytecodeUtils.FINALIZE_FILTER);
+        factory.setFilter(filter);
         if (interfaces != null && interfaces.length > 0) {
             factory.setInterfaces(interfaces);
         }
         if (superClass != null) {
             factory.setSuperclass(superClass);
         }
+        return new ProxyType(getProxyClass(factory));
+    }
 
-        final Class<?> proxyClass = getProxyClass(factory);
-        try {
-            Proxy proxy;
-            if (paramTypes == null || paramTypes.length == 0) {
-                proxy = (Proxy) proxyClass.newInstance();
-            } else {
-                Constructor<?> ctor = proxyClass.getConstructor(paramTypes);
-                proxy = (Proxy) ctor.newInstance(args);
+    /**
+     * Can the key's classes live as long as the expected class.
+     */
+    private static boolean isCacheable(Class<?> expected, Class<?> superClass, Class<?>[] interfaces) {
+        final ClassLoader cl = expected.getClassLoader();
+        if (isSameOrBootstrap(cl, superClass) == false) {
+            return false;
+        }
+        if (interfaces != null) {
+            for (Class<?> type : interfaces) {
+                if (isSameOrBootstrap(cl, type) == false) {
+                    return false;
+                }
             }
-            proxy.setHandler(handler);
-            return expected.cast(proxy);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
         }
+        return true;
+    }
+
+    private static boolean isSameOrBootstrap(ClassLoader cl, Class<?> type) {
+        if (type == null) {
+            return true;
+        }
+        final ClassLoader typeCL = type.getClassLoader();
+        return (typeCL == null || typeCL == cl);
     }
 
     protected static Class<?> getProxyClass(ProxyFactory factory) {
@@ -130,4 +195,70 @@ public final class BytecodeUtils {
             return classLoader;
         }
     }
+
+    private static final class ProxyKey {
+        private final Class<?> superClass;
+        private final Class<?>[] interfaces;
+        private final MethodFilter filter;
+        private final int hash;
+
+        private ProxyKey(Class<?> superClass, Class<?>[] interfaces, MethodFilter filter) {
+            this.superClass = superClass;
+            this.interfaces = (interfaces != null && interfaces.length > 0) ? interfaces : null;
+            this.filter = filter;
+            this.hash = 31 * (31 * System.identityHashCode(superClass) + Arrays.hashCode(this.interfaces)) + System.identityHashCode(filter);
+        }
+
+        private ProxyKey copy() {
+            return (interfaces != null) ? new ProxyKey(superClass, interfaces.clone(), filter) : this;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof ProxyKey == false) {
+                return false;
+            }
+            ProxyKey other = (ProxyKey) obj;
+            return superClass == other.superClass && filter == other.filter && Arrays.equals(interfaces, other.interfaces);
+        }
+    }
+
+    private static final class ProxyType {
+        private static final Class<?>[] NO_PARAMS = new Class[0];
+
+        private final Class<?> proxyClass;
+        private volatile CachedConstructor last; // most callers always use the same ctor
+
+        private ProxyType(Class<?> proxyClass) {
+            this.proxyClass = proxyClass;
+        }
+
+        private Constructor<?> getConstructor(Class<?>[] paramTypes) throws NoSuchMethodException {
+            if (paramTypes == null) {
+                paramTypes = NO_PARAMS;
+            }
+            final CachedConstructor cached = last;
+            if (cached != null && Arrays.equals(cached.paramTypes, paramTypes)) {
+                return cached.ctor;
+            }
+            final Constructor<?> ctor = proxyClass.getConstructor(paramTypes);
+            last = new CachedConstructor(paramTypes.clone(), ctor);
+            return ctor;
+        }
+    }
+
+    private static final class CachedConstructor {
+        private final Class<?>[] paramTypes;
+        private final Constructor<?> ctor;
+
+        private CachedConstructor(Class<?>[] paramTypes, Constructor<?> ctor) {
+            this.paramTypes = paramTypes;
+            this.ctor = ctor;
+        }
+    }
 }
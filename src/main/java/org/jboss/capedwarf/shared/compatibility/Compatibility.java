@@ -24,9 +24,8 @@ package org.jboss.capedwarf.shared.compatibility;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Map;
+import java.util.EnumSet;
 import java.util.Properties;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 import org.jboss.capedwarf.shared.components.AppIdFactory;
@@ -34,7 +33,7 @@ import org.jboss.capedwarf.shared.components.ComponentRegistry;
 import org.jboss.capedwarf.shared.components.Key;
 import org.jboss.capedwarf.shared.components.Keys;
 import org.jboss.capedwarf.shared.components.SimpleKey;
-import org.jboss.capedwarf.shared.util.CountingMapThreadLocal;
+import org.jboss.capedwarf.shared.util.CountingBitsThreadLocal;
 
 /**
  * Allow for custom extensions to GAE API, impl, behavior, etc.
@@ -65,11 +64,19 @@ public class Compatibility {
         LOG_TO_FILE("log.to.file", NotEmpty.INSTANCE),  // TODO -- better Value; e.g. FileName
         ENABLE_SOCKET_OPTIONS("enable.socket.options"),
         IGNORE_CAPEDWARF_SOCKETS("ignore.capedwarf.sockets"),
+        SOCKET_STREAM_BUFFER_SIZE("socket.stream.buffer.size", new IntegerValue(8192)), // buffer app socket streams
         IGNORE_CAPEDWARF_URL_STREAM_HANDLER("ignore.capedwarf.url.stream.handler"),
+        URL_CONNECTION_MAX_PER_HOST("url.connection.max.per.host", new IntegerValue(20)), // enables url connection pool
+        URL_CONNECTION_ACQUIRE_TIMEOUT("url.connection.acquire.timeout", new IntegerValue(10)), // seconds
+        URL_CONNECTION_IDLE_TIMEOUT("url.connection.idle.timeout", new IntegerValue(60)), // seconds
+        URL_CONNECTION_CHUNK_SIZE("url.connection.chunk.size", new IntegerValue(8192)), // streamed uploads, 0 lets the JDK buffer them (needed for auth retries / POST redirects)
+        URL_CONNECTION_GZIP("url.connection.gzip"), // transparent gzip decoding
         CHANNEL_DEFAULT_DURATION_MINUTES("channel.default.duration.minutes", new IntegerValue(2 * 60)),
         DEFAULT_GCS_BUCKET_NAME("default.gcs.bucket.name", NotEmpty.INSTANCE),
         DISABLE_WEB_SOCKETS_CHANNEL("disable.websockets.channel"),
-        TASKQUEUE_ROLES("taskqueue.roles", new FallbackValue("admin"));
+        TASKQUEUE_ROLES("taskqueue.roles", new FallbackValue("admin")),
+        ENABLE_COMPATIBILITY_RELOAD("enable.compatibility.reload"),
+        COMPATIBILITY_RELOAD_INTERVAL("compatibility.reload.interval", new IntegerValue(5)); // seconds, for non-file deployments
 
         private String key;
         private Value value;
@@ -100,13 +107,55 @@ public class Compatibility {
         }
     }
 
-    private static final CountingMapThreadLocal<Feature> temps = new CountingMapThreadLocal<>();
+    private static final CountingBitsThreadLocal<Feature> temps = new CountingBitsThreadLocal<>(Feature.class);
+    // opt-in only, enable.all doesn't turn these on, as they change runtime behavior of existing deployments
+    private static final EnumSet<Feature> EXPLICIT_ONLY = EnumSet.of(
+        Feature.SOCKET_STREAM_BUFFER_SIZE,
+        Feature.URL_CONNECTION_MAX_PER_HOST,
+        Feature.URL_CONNECTION_ACQUIRE_TIMEOUT,
+        Feature.URL_CONNECTION_IDLE_TIMEOUT,
+        Feature.URL_CONNECTION_CHUNK_SIZE,
+        Feature.URL_CONNECTION_GZIP,
+        Feature.ENABLE_COMPATIBILITY_RELOAD,
+        Feature.COMPATIBILITY_RELOAD_INTERVAL
+    );
+    private static final long ENABLE_ALL_MASK = toEnableAllMask();
+    private static final Object INVALID = new Object();
 
     private final Properties properties;
-    private final Map<Feature, Boolean> values = new ConcurrentHashMap<>();
+    // compiled once, indexed by Feature.ordinal()
+    private final long enabled;
+    private final Object[] objects;
 
     private Compatibility(Properties properties) {
         this.properties = properties;
+
+        final Feature[] features = Feature.values();
+        long mask = 0;
+        objects = new Object[features.length];
+        for (Feature feature : features) {
+            final String value = properties.getProperty(feature.key);
+            if (value != null && feature.value.match(value)) {
+                mask |= (1L << feature.ordinal());
+            }
+            try {
+                objects[feature.ordinal()] = feature.value.transform(value);
+            } catch (RuntimeException e) {
+                objects[feature.ordinal()] = INVALID; // re-transform on access, to report the error
+            }
+        }
+        // enable.all turns on every feature, but the explicit only ones
+        enabled = ((mask & (1L << Feature.ENABLE_ALL.ordinal())) != 0) ? (mask | ENABLE_ALL_MASK) : mask;
+    }
+
+    private static long toEnableAllMask() {
+        long mask = 0;
+        for (Feature feature : Feature.values()) {
+            if (EXPLICIT_ONLY.contains(feature) == false) {
+                mask |= (1L << feature.ordinal());
+            }
+        }
+        return mask;
     }
 
     /**
@@ -152,6 +201,7 @@ public class Compatibility {
 
     /**
      * Read Compatibility, not cached!
+     * See CompatibilityReloader for live reload.
      *
      * @param cl the classloader
      * @return compatibility
@@ -190,7 +240,7 @@ public class Compatibility {
     }
 
     public boolean isEnabled(Feature feature) {
-        return temps.hasValue(feature) || isEnabledInternal(Feature.ENABLE_ALL) || isEnabledInternal(feature);
+        return ((temps.getBits() | enabled) & (1L << feature.ordinal())) != 0;
     }
 
     public String getValue(Feature feature) {
@@ -198,18 +248,22 @@ public class Compatibility {
     }
 
     public Object toObject(Feature feature) {
-        final String string = getValue(feature);
-        return feature.value.transform(string);
+        final Object object = objects[feature.ordinal()];
+        if (object == INVALID) {
+            return feature.value.transform(getValue(feature));
+        }
+        return object;
     }
 
+    /**
+     * Is the feature enabled by the properties, either explicitly or through enable.all;
+     * temp enables are not included.
+     *
+     * @param feature the feature
+     * @return true if enabled, false otherwise
+     */
     protected boolean isEnabledInternal(Feature feature) {
-        Boolean result = values.get(feature);
-        if (result == null) {
-            final String value = properties.getProperty(feature.key);
-            result = (value != null && feature.value.match(value));
-            values.put(feature, result);
-        }
-        return result;
+        return (enabled & (1L << feature.ordinal())) != 0;
     }
 
     /**
@@ -0,0 +1,232 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.capedwarf.shared.compatibility;
+
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jboss.capedwarf.shared.components.ComponentRegistry;
+import org.jboss.capedwarf.shared.components.Key;
+import org.jboss.capedwarf.shared.components.Keys;
+import org.jboss.capedwarf.shared.components.ShutdownHook;
+import org.jboss.capedwarf.shared.components.SimpleKey;
+
+/**
+ * Re-reads Compatibility when capedwarf-compatibility.properties changes.
+ *
+ * Each reload builds a new immutable Compatibility and publishes it
+ * with a single registry put, so readers never block nor see a partial update.
+ * Changes to Keys.CONFIGURATION are picked up on the next reload; see #reload.
+ *
+ * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
+ */
+public final class CompatibilityReloader implements ShutdownHook {
+    private static final Logger log = Logger.getLogger(CompatibilityReloader.class.getName());
+
+    private final ClassLoader classLoader;
+    private final Key<Compatibility> key;
+    private volatile Thread watcher;
+
+    private CompatibilityReloader(ClassLoader classLoader, Key<Compatibility> key) {
+        this.classLoader = classLoader;
+        this.key = key;
+    }
+
+    /**
+     * Start watching app's compatibility, if enabled.
+     *
+     * @param appId the app id
+     * @param module the module
+     * @param cl the app classloader
+     * @return reloader or null if reload is not enabled
+     */
+    public static CompatibilityReloader start(String appId, String module, ClassLoader cl) {
+        final Key<Compatibility> key = new SimpleKey<>(appId, module, Compatibility.class);
+        final ComponentRegistry registry = ComponentRegistry.getInstance();
+
+        Compatibility compatibility = registry.getComponent(key);
+        if (compatibility == null) {
+            compatibility = Compatibility.readCompatibility(cl);
+            registry.setComponent(key, compatibility);
+        }
+        if (compatibility.isEnabled(Compatibility.Feature.ENABLE_COMPATIBILITY_RELOAD) == false) {
+            return null;
+        }
+
+        final CompatibilityReloader reloader = new CompatibilityReloader(cl, key);
+        registry.setComponent(new SimpleKey<>(appId, module, CompatibilityReloader.class), reloader);
+        reloader.watch((Integer) compatibility.toObject(Compatibility.Feature.COMPATIBILITY_RELOAD_INTERVAL));
+        return reloader;
+    }
+
+    /**
+     * Re-read compatibility and publish it.
+     *
+     * @return new compatibility
+     */
+    public synchronized Compatibility reload() {
+        final Compatibility compatibility = Compatibility.readCompatibility(classLoader);
+        ComponentRegistry.getInstance().setComponent(key, compatibility);
+        log.info(String.format("Reloaded %s for %s", Compatibility.FILENAME, key));
+        return compatibility;
+    }
+
+    private void watch(final int interval) {
+        final URL url = classLoader.getResource(Compatibility.FILENAME);
+        if (url == null) {
+            log.warning(String.format("No %s to watch for %s, use #reload.", Compatibility.FILENAME, key));
+            return;
+        }
+
+        final Runnable task = "file".equals(url.getProtocol()) ? new FileWatch(url) : new Poll(url, interval);
+        ThreadFactory factory = ComponentRegistry.getInstance().getComponent(Keys.THREAD_FACTORY);
+        Thread thread = (factory != null) ? factory.newThread(task) : new Thread(task);
+        thread.setName("CapeDwarf compatibility reloader - " + key);
+        thread.setDaemon(true);
+        watcher = thread;
+        thread.start();
+    }
+
+    private boolean isWatching() {
+        return (watcher == Thread.currentThread());
+    }
+
+    private void safeReload() {
+        try {
+            reload();
+        } catch (Exception e) {
+            log.log(Level.WARNING, String.format("Cannot reload %s for %s, keeping previous.", Compatibility.FILENAME, key), e);
+        }
+    }
+
+    public void shutdown() {
+        final Thread thread = watcher;
+        watcher = null;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    public void clear() {
+        shutdown();
+    }
+
+    private class FileWatch implements Runnable {
+        private final URL url;
+
+        private FileWatch(URL url) {
+            this.url = url;
+        }
+
+        public void run() {
+            try (WatchService service = FileSystems.getDefault().newWatchService()) {
+                final Path file = Paths.get(url.toURI());
+                file.getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+                while (isWatching()) {
+                    final WatchKey wk = service.take();
+                    boolean changed = false;
+                    for (WatchEvent<?> event : wk.pollEvents()) {
+                        changed |= file.getFileName().equals(event.context());
+                    }
+                    if (changed) {
+                        safeReload();
+                    }
+                    if (wk.reset() == false) {
+                        break;
+                    }
+                }
+            } catch (InterruptedException ignored) {
+            } catch (Exception e) {
+                log.log(Level.WARNING, String.format("Stopped watching %s for %s.", url, key), e);
+            }
+        }
+    }
+
+    /**
+     * Polls the file's last modified time, a failed check is logged and retried on the next interval;
+     * only an interrupt or #shutdown ends it.
+     */
+    private class Poll implements Runnable {
+        private final URL url;
+        private final int interval;
+        private boolean failing;
+
+        private Poll(URL url, int interval) {
+            this.url = url;
+            this.interval = interval;
+        }
+
+        private long lastModified() throws Exception {
+            final URLConnection connection = url.openConnection();
+            connection.setUseCaches(false);
+            return connection.getLastModified();
+        }
+
+        /**
+         * @return last modified, or null if it cannot be read right now
+         */
+        private Long safeLastModified() {
+            try {
+                final long lastModified = lastModified();
+                if (failing) {
+                    failing = false;
+                    log.info(String.format("Polling %s for %s again.", url, key));
+                }
+                return lastModified;
+            } catch (Exception e) {
+                if (failing == false) {
+                    failing = true; // only log the first of a streak, we poll every interval
+                    log.log(Level.WARNING, String.format("Cannot poll %s for %s, will retry.", url, key), e);
+                }
+                return null;
+            }
+        }
+
+        public void run() {
+            try {
+                Long last = safeLastModified();
+                while (isWatching()) {
+                    TimeUnit.SECONDS.sleep(interval);
+                    final Long current = safeLastModified();
+                    // no previous value (first check failed), reload to be sure
+                    if (current != null && current.equals(last) == false) {
+                        last = current;
+                        safeReload();
+                    }
+                }
+            } catch (InterruptedException ignored) {
+            }
+        }
+    }
+}
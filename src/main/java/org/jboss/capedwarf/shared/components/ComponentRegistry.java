@@ -22,7 +22,6 @@
 
 package org.jboss.capedwarf.shared.components;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -32,6 +31,9 @@ import java.util.concurrent.locks.ReentrantLock;
 /**
  * A bit hackish aka type-unsafe registry.
  *
+ * Per-app components live in concurrent maps, so lookups are lock-free;
+ * the per-app lock only guards structural changes -- creating or dropping an app's map.
+ *
  * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
  */
 @SuppressWarnings("unchecked")
@@ -67,6 +69,19 @@ public final class ComponentRegistry {
         }
     }
 
+    private ConcurrentMap<Object, Object> getMap(String appId) {
+        return (ConcurrentMap<Object, Object>) registry.get(appId);
+    }
+
+    private ConcurrentMap<Object, Object> getOrCreateMap(String appId) {
+        ConcurrentMap<Object, Object> map = getMap(appId);
+        if (map == null) {
+            map = new ConcurrentHashMap<>();
+            registry.put(appId, map);
+        }
+        return map;
+    }
+
     private <T> T getValue(Map<Object, ?> map, Object slot, Class<T> type) {
         if (map != null) {
             Object value = map.get(slot);
@@ -83,13 +98,7 @@ public final class ComponentRegistry {
         if (appId == null) {
             return getValue(registry, slot, type);
         } else {
-            final Lock lock = lock(appId);
-            try {
-                Map<Object, Object> map = (Map<Object, Object>) registry.get(appId);
-                return getValue(map, slot, type);
-            } finally {
-                lock.unlock();
-            }
+            return getValue(getMap(appId), slot, type);
         }
     }
 
@@ -103,19 +112,8 @@ public final class ComponentRegistry {
         } else {
             final Lock lock = lock(appId);
             try {
-                T previous = null;
-                Map<Object, Object> map = (Map<Object, Object>) registry.get(appId);
-                if (map == null) {
-                    map = new HashMap<>();
-                    registry.put(appId, map);
-                    map.put(slot, value);
-                } else {
-                    previous = getValue(map, slot, type);
-                    if (previous == null) {
-                        map.put(slot, value);
-                    }
-                }
-                return previous;
+                Object result = getOrCreateMap(appId).putIfAbsent(slot, value);
+                return type.cast(result);
             } finally {
                 lock.unlock();
             }
@@ -130,12 +128,11 @@ public final class ComponentRegistry {
         } else {
             final Lock lock = lock(appId);
             try {
-                Map<Object, Object> map = (Map<Object, Object>) registry.get(appId);
-                if (map == null) {
-                    map = new HashMap<>();
-                    registry.put(appId, map);
+                if (value != null) {
+                    getOrCreateMap(appId).put(slot, value);
+                } else {
+                    removeInternal(appId, slot);
                 }
-                map.put(slot, value);
             } finally {
                 lock.unlock();
             }
@@ -150,32 +147,30 @@ public final class ComponentRegistry {
         } else {
             final Lock lock = lock(appId);
             try {
-                Map<Object, Object> map = (Map<Object, Object>) registry.get(appId);
-                if (map != null) {
-                    map.remove(slot);
-                    if (map.isEmpty()) {
-                        registry.remove(appId);
-                    }
-                }
+                removeInternal(appId, slot);
             } finally {
                 lock.unlock();
             }
         }
     }
 
+    private void removeInternal(String appId, Object slot) {
+        Map<Object, Object> map = getMap(appId);
+        if (map != null) {
+            map.remove(slot);
+            if (map.isEmpty()) {
+                registry.remove(appId);
+            }
+        }
+    }
+
     /**
      * Stop components, while the CL resources are still available.
      *
      * @param appId the app id
      */
     public void shutdownComponents(String appId) {
-        final Map<Object, Object> map;
-        final Lock lock = lock(appId);
-        try {
-            map = (Map<Object, Object>) registry.get(appId);
-        } finally {
-            lock.unlock();
-        }
+        final Map<Object, Object> map = getMap(appId);
         // stop components
         if (map != null) {
             for (Object value : map.values()) {
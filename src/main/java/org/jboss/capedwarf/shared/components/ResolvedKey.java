@@ -0,0 +1,96 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.capedwarf.shared.components;
+
+/**
+ * Pre-resolved component key.
+ *
+ * AppId, module and slot are fixed at creation time,
+ * so lookups with this key do no classloader or string work.
+ * Instances are interned per app classloader, see CapedwarfApiProxy.Info#getKey.
+ *
+ * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
+ */
+public final class ResolvedKey<T> implements CacheableKey<T> {
+    private final String appId;
+    private final String module;
+    private final Object slot;
+    private final Class<T> type;
+    private final Object key;
+    private final int hash;
+
+    public ResolvedKey(String appId, String module, Class<T> type) {
+        this(appId, module, SimpleKey.toName(type), type);
+    }
+
+    public ResolvedKey(String appId, String module, Object slot, Class<T> type) {
+        this.appId = appId;
+        this.module = module;
+        this.slot = slot;
+        this.type = type;
+        this.key = ComponentRegistry.toCacheableKey(this);
+        this.hash = 31 * (appId != null ? appId.hashCode() : 0) + key.hashCode();
+    }
+
+    public String getAppId() {
+        return appId;
+    }
+
+    public String getModule() {
+        return module;
+    }
+
+    public Object getSlot() {
+        return slot;
+    }
+
+    public Class<T> getType() {
+        return type;
+    }
+
+    public Object getCacheableKey() {
+        return key;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (obj instanceof ResolvedKey == false) {
+            return false;
+        }
+        ResolvedKey other = (ResolvedKey) obj;
+        return hash == other.hash && key.equals(other.key) && (appId != null ? appId.equals(other.appId) : other.appId == null);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("appId:%s, module:%s, slot:%s", getAppId(), getModule(), getSlot());
+    }
+}
@@ -22,6 +22,8 @@
 
 package org.jboss.capedwarf.shared.components;
 
+import org.jboss.capedwarf.shared.servlet.CapedwarfApiProxy;
+
 /**
  * Simple component key.
  *
@@ -35,10 +37,27 @@ public class SimpleKey<T> extends BaseKey<T> {
         return type.getName();
     }
 
+    /**
+     * Key resolving its app / module from the classloader on each lookup.
+     *
+     * @param type the component type
+     * @return lazy key
+     */
     public static <T> Key<T> withClassloader(Class<T> type) {
         return new SimpleKey<>(ClassloaderAppIdFactory.INSTANCE, type);
     }
 
+    /**
+     * Current app / module's interned key, resolved once, now.
+     * Only for lookups on an app's (request) thread, the key is bound to that app.
+     *
+     * @param type the component type
+     * @return resolved key
+     */
+    public static <T> Key<T> withCurrentApp(Class<T> type) {
+        return CapedwarfApiProxy.getInfo().getKey(type);
+    }
+
     public SimpleKey(Class<T> type) {
         super(ClassloaderAppIdFactory.INSTANCE, toName(type), type);
     }
@@ -46,6 +46,6 @@ public class ApplicationConfiguration implements Serializable {
     }
 
     public static ApplicationConfiguration getInstance() {
-        return ComponentRegistry.getInstance().getComponent(new SimpleKey<>(ApplicationConfiguration.class));
+        return ComponentRegistry.getInstance().getComponent(SimpleKey.withClassloader(ApplicationConfiguration.class));
     }
 }
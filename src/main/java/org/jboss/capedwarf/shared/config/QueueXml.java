@@ -49,7 +49,11 @@ public class QueueXml implements Serializable {
     }
 
     void addQueue(String name, Mode mode) {
-        queues.put(name, new Queue(name, mode));
+        addQueue(new Queue(name, mode));
+    }
+
+    void addQueue(Queue queue) {
+        queues.put(queue.getName(), queue);
     }
 
     public Map<String, Queue> getQueues() {
@@ -61,8 +65,12 @@ public class QueueXml implements Serializable {
 
         private String name;
         private Mode mode;
+        private double rate = 5; // tasks per second
+        private int bucketSize = 5;
+        private int maxConcurrentRequests; // 0 -- no limit
+        private RetryParameters retryParameters = new RetryParameters();
 
-        private Queue(String name, Mode mode) {
+        Queue(String name, Mode mode) {
             this.name = name;
             if (mode == null)
                 mode = Mode.PUSH;
@@ -76,6 +84,110 @@ public class QueueXml implements Serializable {
         public Mode getMode() {
             return mode;
         }
+
+        /**
+         * @return max tasks per second, 0 if paused
+         */
+        public double getRate() {
+            return rate;
+        }
+
+        void setRate(double rate) {
+            this.rate = rate;
+        }
+
+        public int getBucketSize() {
+            return bucketSize;
+        }
+
+        void setBucketSize(int bucketSize) {
+            this.bucketSize = bucketSize;
+        }
+
+        /**
+         * @return max concurrent requests, 0 if unlimited
+         */
+        public int getMaxConcurrentRequests() {
+            return maxConcurrentRequests;
+        }
+
+        void setMaxConcurrentRequests(int maxConcurrentRequests) {
+            this.maxConcurrentRequests = maxConcurrentRequests;
+        }
+
+        public RetryParameters getRetryParameters() {
+            return retryParameters;
+        }
+
+        void setRetryParameters(RetryParameters retryParameters) {
+            this.retryParameters = retryParameters;
+        }
+    }
+
+    public static class RetryParameters implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private int taskRetryLimit = -1; // -1 -- no limit
+        private long taskAgeLimit = -1; // seconds, -1 -- no limit
+        private double minBackoffSeconds = 0.1;
+        private double maxBackoffSeconds = 3600;
+        private int maxDoublings = 16;
+
+        public int getTaskRetryLimit() {
+            return taskRetryLimit;
+        }
+
+        void setTaskRetryLimit(int taskRetryLimit) {
+            this.taskRetryLimit = taskRetryLimit;
+        }
+
+        public long getTaskAgeLimit() {
+            return taskAgeLimit;
+        }
+
+        void setTaskAgeLimit(long taskAgeLimit) {
+            this.taskAgeLimit = taskAgeLimit;
+        }
+
+        public double getMinBackoffSeconds() {
+            return minBackoffSeconds;
+        }
+
+        void setMinBackoffSeconds(double minBackoffSeconds) {
+            this.minBackoffSeconds = minBackoffSeconds;
+        }
+
+        public double getMaxBackoffSeconds() {
+            return maxBackoffSeconds;
+        }
+
+        void setMaxBackoffSeconds(double maxBackoffSeconds) {
+            this.maxBackoffSeconds = maxBackoffSeconds;
+        }
+
+        public int getMaxDoublings() {
+            return maxDoublings;
+        }
+
+        void setMaxDoublings(int maxDoublings) {
+            this.maxDoublings = maxDoublings;
+        }
+
+        /**
+         * Backoff before given retry: doubles from min backoff max doublings times,
+         * then grows linearly by the last doubled value, capped at max backoff.
+         *
+         * @param retry the retry, from 1
+         * @return backoff in seconds
+         */
+        public double getBackoffSeconds(int retry) {
+            final int doublings = Math.min(Math.max(retry - 1, 0), maxDoublings);
+            double backoff = minBackoffSeconds * Math.pow(2, doublings);
+            if (retry - 1 > maxDoublings) {
+                backoff *= (retry - maxDoublings);
+            }
+            return Math.min(backoff, maxBackoffSeconds);
+        }
     }
 
     public static enum Mode {
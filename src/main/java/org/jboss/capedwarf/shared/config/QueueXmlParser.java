@@ -92,7 +92,93 @@ public class QueueXmlParser {
     private static void parseQueueTag(QueueXml queueXml, Element queue) {
         String name = getBody(getChildElement(queue, NAME_TAG));
         String mode = getBody(getChildElement(queue, MODE_TAG, true));
-        queueXml.addQueue(name, (mode != null) ? QueueXml.Mode.valueOf(mode.toUpperCase()) : null);
+        QueueXml.Queue q = new QueueXml.Queue(name, (mode != null) ? QueueXml.Mode.valueOf(mode.trim().toUpperCase()) : null);
+
+        String rate = getBody(getChildElement(queue, RATE_TAG, true));
+        if (rate != null) {
+            q.setRate(parseRate(rate.trim()));
+        }
+        String bucketSize = getBody(getChildElement(queue, BUCKET_SIZE, true));
+        if (bucketSize != null) {
+            q.setBucketSize(Integer.parseInt(bucketSize.trim()));
+        }
+        String mcr = getBody(getChildElement(queue, MAX_CONCURRENT_REQUESTS, true));
+        if (mcr != null) {
+            q.setMaxConcurrentRequests(Integer.parseInt(mcr.trim()));
+        }
+        Element retry = getChildElement(queue, RETRY_PARAMETERS_TAG, true);
+        if (retry != null) {
+            q.setRetryParameters(parseRetryParameters(retry));
+        }
+
+        queueXml.addQueue(q);
+    }
+
+    private static QueueXml.RetryParameters parseRetryParameters(Element retry) {
+        QueueXml.RetryParameters rp = new QueueXml.RetryParameters();
+        String taskRetryLimit = getBody(getChildElement(retry, TASK_RETRY_LIMIT_TAG, true));
+        if (taskRetryLimit != null) {
+            rp.setTaskRetryLimit(Integer.parseInt(taskRetryLimit.trim()));
+        }
+        String taskAgeLimit = getBody(getChildElement(retry, TASK_AGE_LIMIT_TAG, true));
+        if (taskAgeLimit != null) {
+            rp.setTaskAgeLimit(parseSeconds(taskAgeLimit.trim()));
+        }
+        String minBackoff = getBody(getChildElement(retry, MIN_BACKOFF_SECONDS_TAG, true));
+        if (minBackoff != null) {
+            rp.setMinBackoffSeconds(Double.parseDouble(minBackoff.trim()));
+        }
+        String maxBackoff = getBody(getChildElement(retry, MAX_BACKOFF_SECONDS_TAG, true));
+        if (maxBackoff != null) {
+            rp.setMaxBackoffSeconds(Double.parseDouble(maxBackoff.trim()));
+        }
+        String maxDoublings = getBody(getChildElement(retry, MAX_DOUBLINGS_TAG, true));
+        if (maxDoublings != null) {
+            rp.setMaxDoublings(Integer.parseInt(maxDoublings.trim()));
+        }
+        return rp;
+    }
+
+    /**
+     * Parse rate, e.g. 5/s, 10/m, 1/h or 2/d.
+     *
+     * @return tasks per second
+     */
+    static double parseRate(String rate) {
+        int p = rate.indexOf('/');
+        if (p <= 0 || p == rate.length() - 1) {
+            throw new CapedwarfConfigException("Invalid queue rate: " + rate);
+        }
+        double count = Double.parseDouble(rate.substring(0, p).trim());
+        return count / toSeconds(rate.charAt(rate.length() - 1), rate);
+    }
+
+    /**
+     * Parse time, e.g. 30s, 10m, 2h or 1d.
+     *
+     * @return seconds
+     */
+    static long parseSeconds(String time) {
+        if (time.length() < 2) {
+            throw new CapedwarfConfigException("Invalid time: " + time);
+        }
+        double value = Double.parseDouble(time.substring(0, time.length() - 1).trim());
+        return (long) (value * toSeconds(time.charAt(time.length() - 1), time));
+    }
+
+    private static long toSeconds(char unit, String value) {
+        switch (unit) {
+            case 's':
+                return 1;
+            case 'm':
+                return 60;
+            case 'h':
+                return 60 * 60;
+            case 'd':
+                return 24 * 60 * 60;
+            default:
+                throw new CapedwarfConfigException("Invalid time unit: " + value);
+        }
     }
 
     private static String getBody(Element element) {
@@ -0,0 +1,202 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.capedwarf.shared.endpoints;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Runtime converter dispatch, from a value's class to its converter.
+ *
+ * Lookups match the class itself, then its superclasses, then its interfaces (breadth first).
+ * Each class is resolved once and cached, misses included; cycles are detected when resolving.
+ * Immutable apart from the resolved cache, so it's read without locks.
+ *
+ * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
+ */
+final class ConverterTable {
+    static final ConverterTable EMPTY = new ConverterTable(Collections.<Class<?>, Converters.Converter>emptyMap(), Collections.<Class<?>, Class<?>>emptyMap());
+
+    private static final Object NONE = new Object();
+
+    private final Map<Class<?>, Converters.Converter> converters;
+    private final Map<Class<?>, Class<?>> targets;
+    private final ConcurrentMap<Class<?>, Object> resolved = new ConcurrentHashMap<>();
+
+    /**
+     * @param converters converter per source type
+     * @param targets declared target type per source type
+     */
+    ConverterTable(Map<Class<?>, Converters.Converter> converters, Map<Class<?>, Class<?>> targets) {
+        this.converters = converters;
+        this.targets = targets;
+    }
+
+    boolean isEmpty() {
+        return converters.isEmpty();
+    }
+
+    /**
+     * Get converter.
+     *
+     * @param clazz the value's class
+     * @return converter or null if none applies
+     * @throws IllegalStateException if converting clazz would loop
+     */
+    Converters.Converter get(Class<?> clazz) {
+        Object converter = resolved.get(clazz);
+        if (converter == null) {
+            converter = resolve(clazz);
+            resolved.putIfAbsent(clazz, converter);
+        }
+        return (converter != NONE) ? (Converters.Converter) converter : null;
+    }
+
+    /**
+     * Convert until no converter applies anymore.
+     *
+     * @param value the value
+     * @return converted value
+     */
+    Object convert(Object value) {
+        int steps = 0;
+        while (value != null) {
+            final Converters.Converter converter = get(value.getClass());
+            if (converter == null) {
+                return value;
+            }
+            // resolve checks declared types, this guards against runtime subtypes
+            if (++steps > converters.size()) {
+                throw new IllegalStateException(String.format("Converter loop, last value %s [%s]", value, value.getClass().getName()));
+            }
+            value = converter.convert(value);
+        }
+        return null;
+    }
+
+    /**
+     * Convert values in [from, to), in place.
+     * Runs of same class values resolve their converter once.
+     *
+     * @param values the values
+     * @param from from index, inclusive
+     * @param to to index, exclusive
+     */
+    void convertAll(Object[] values, int from, int to) {
+        Class<?> lastClass = null;
+        Converters.Converter converter = null;
+        for (int i = from; i < to; i++) {
+            final Object value = values[i];
+            if (value == null) {
+                continue;
+            }
+            final Class<?> clazz = value.getClass();
+            if (clazz != lastClass) {
+                lastClass = clazz;
+                converter = get(clazz);
+            }
+            if (converter != null) {
+                values[i] = convert(converter.convert(value));
+            }
+        }
+    }
+
+    /**
+     * Follow declared target types, from start.
+     *
+     * @param start the start type
+     * @return last type with no converter
+     */
+    Class<?> traverse(Class<?> start) {
+        final Set<Class<?>> seen = new HashSet<>();
+        Class<?> current = start;
+        while (seen.add(current)) {
+            final Class<?> type = findType(current);
+            if (type == null) {
+                return current;
+            }
+            current = targets.get(type);
+        }
+        throw new IllegalStateException("Converter cycle: " + seen);
+    }
+
+    /**
+     * Most specific registered type clazz is assignable to.
+     *
+     * @return the type, or null if none
+     */
+    Class<?> findType(Class<?> clazz) {
+        for (Class<?> current = clazz; current != null; current = current.getSuperclass()) {
+            if (converters.containsKey(current)) {
+                return current;
+            }
+        }
+        final Deque<Class<?>> queue = new ArrayDeque<>();
+        final Set<Class<?>> seen = new HashSet<>();
+        for (Class<?> current = clazz; current != null; current = current.getSuperclass()) {
+            Collections.addAll(queue, current.getInterfaces());
+        }
+        while (queue.isEmpty() == false) {
+            final Class<?> iface = queue.poll();
+            if (seen.add(iface) == false) {
+                continue;
+            }
+            if (converters.containsKey(iface)) {
+                return iface;
+            }
+            Collections.addAll(queue, iface.getInterfaces());
+        }
+        return null;
+    }
+
+    private Object resolve(Class<?> clazz) {
+        final Class<?> type = findType(clazz);
+        if (type == null) {
+            return NONE;
+        }
+        checkCycle(clazz);
+        return converters.get(type);
+    }
+
+    private void checkCycle(Class<?> clazz) {
+        final List<Class<?>> path = new ArrayList<>();
+        Class<?> current = clazz;
+        while (current != null) {
+            if (path.contains(current)) {
+                path.add(current);
+                throw new IllegalStateException("Converter cycle: " + path);
+            }
+            path.add(current);
+            final Class<?> type = findType(current);
+            current = (type != null) ? targets.get(type) : null;
+        }
+    }
+}
@@ -22,13 +22,23 @@
 
 package org.jboss.capedwarf.shared.endpoints;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
 import java.util.logging.Logger;
 
 import javassist.ClassPool;
@@ -39,47 +49,59 @@ import javassist.Modifier;
 import javassist.NotFoundException;
 import org.jboss.capedwarf.shared.components.ComponentRegistry;
 import org.jboss.capedwarf.shared.components.Key;
+import org.jboss.capedwarf.shared.components.Keys;
 import org.jboss.capedwarf.shared.components.ShutdownHook;
 import org.jboss.capedwarf.shared.components.SimpleKey;
 import org.jboss.capedwarf.shared.servlet.CapedwarfApiProxy;
 import org.jboss.capedwarf.shared.util.Utils;
 
 /**
+ * Transformers are registered by name at deploy time, scanned with javassist;
+ * at runtime values are dispatched by class, see ConverterTable.
+ * Once #endRegistration is called, the ClassPool is released and only the runtime index is kept.
+ *
  * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
  */
 public class Converters implements ShutdownHook {
-    private static interface Converter {
+    static interface Converter {
         Object convert(Object value);
     }
 
     private static abstract class AbstractConverter implements Converter {
-        private final CtClassWrapper transformerClass;
+        private final ClassLoader classLoader;
+        private final String transformerClass;
         private final String methodName;
 
-        private Object transformer;
-        private Method method;
+        private volatile MethodHandle handle; // (Object)Object, bound to transformer instance
 
         protected AbstractConverter(CtClassWrapper transformerClass, String methodName) {
-            this.transformerClass = transformerClass;
+            // don't hold on to CtClass, so the pool can go
+            this.classLoader = transformerClass.getClassLoader();
+            this.transformerClass = transformerClass.getCtClass().getName();
             this.methodName = methodName;
         }
 
-        private synchronized Object getTransformer() {
-            if (transformer == null) {
-                try {
-                    transformer = toClass(transformerClass).newInstance();
-                } catch (Exception e) {
-                    throw new IllegalStateException(e);
+        private MethodHandle getHandle() {
+            MethodHandle mh = handle;
+            if (mh == null) {
+                synchronized (this) {
+                    mh = handle;
+                    if (mh == null) {
+                        try {
+                            Object transformer = classLoader.loadClass(transformerClass).newInstance();
+                            Method method = getMethod(transformer.getClass());
+                            method.setAccessible(true);
+                            mh = MethodHandles.lookup().unreflect(method).bindTo(transformer).asType(MethodType.genericMethodType(1));
+                        } catch (IllegalArgumentException e) {
+                            throw e;
+                        } catch (Exception e) {
+                            throw new IllegalStateException(e);
+                        }
+                        handle = mh;
+                    }
                 }
             }
-            return transformer;
-        }
-
-        private synchronized Method getMethod(Object transformer) {
-            if (method == null) {
-                method = getMethod(transformer.getClass());
-            }
-            return method;
+            return mh;
         }
 
         private Method getMethod(Class<?> clazz) {
@@ -95,13 +117,11 @@ public class Converters implements ShutdownHook {
         }
 
         public Object convert(Object value) {
+            final MethodHandle mh = getHandle();
             try {
-                Object transformer = getTransformer();
-                return getMethod(transformer).invoke(transformer, value);
-            } catch (IllegalAccessException e) {
-                throw new IllegalArgumentException(e);
-            } catch (InvocationTargetException e) {
-                throw new IllegalStateException(e.getCause());
+                return mh.invokeExact(value);
+            } catch (Throwable t) {
+                throw new IllegalStateException(t);
             }
         }
     }
@@ -121,16 +141,25 @@ public class Converters implements ShutdownHook {
 
     private static final Logger log = Logger.getLogger(Converter.class.getName());
 
+    private static final int PARALLEL_THRESHOLD = 1024;
+
     private ClassLoader owner;
     private ClassPool pool;
 
     private Set<String> endpoints;
-    private Set<CtClassWrapper> results;
+    private Set<String> results;
+    private Set<String> converterTypes;
 
     private Map<CtClassWrapper, Converter> fromTo;
     private Map<CtClassWrapper, Converter> toFrom;
     private Map<CtClassWrapper, CtClassWrapper> types;
 
+    // compiled on first use, reset on any new transformer
+    private volatile ConverterTable toTable;
+    private volatile ConverterTable fromTable;
+
+    private boolean registrationEnded;
+
     private Converters(final ClassLoader owner) {
         this.owner = owner;
     }
@@ -153,6 +182,28 @@ public class Converters implements ShutdownHook {
         pool = null;
     }
 
+    /**
+     * All endpoints and transformers are registered;
+     * compile the runtime index and release the ClassPool and its CtClasses.
+     */
+    public synchronized void endRegistration() {
+        if (registrationEnded) {
+            return;
+        }
+        compileTables(true);
+        registrationEnded = true;
+        fromTo = null;
+        toFrom = null;
+        types = null;
+        pool = null;
+    }
+
+    private void checkRegistration() {
+        if (registrationEnded) {
+            throw new IllegalStateException("Converters registration already ended.");
+        }
+    }
+
     public void clear() {
     }
 
@@ -161,12 +212,17 @@ public class Converters implements ShutdownHook {
     }
 
     public static Converters getInstance(ClassLoader cl) {
-        CapedwarfApiProxy.Info info = CapedwarfApiProxy.getInfo();
-        Key<Converters> key = new SimpleKey<>(info.getAppId(), info.getModule(), Converters.class);
+        Key<Converters> key = CapedwarfApiProxy.getInfo().getKey(Converters.class);
         ComponentRegistry registry = ComponentRegistry.getInstance();
-        Converters converters = new Converters(cl);
-        Converters previous = registry.putIfAbsent(key, converters);
-        return (previous != null) ? previous : converters;
+        Converters converters = registry.getComponent(key);
+        if (converters == null) {
+            converters = new Converters(cl);
+            Converters previous = registry.putIfAbsent(key, converters);
+            if (previous != null) {
+                converters = previous;
+            }
+        }
+        return converters;
     }
 
     public static void removeInstance(String appId, String module) {
@@ -187,6 +243,7 @@ public class Converters implements ShutdownHook {
     }
 
     public void addResultType(String className) {
+        checkRegistration();
         addResultType(fromClassName(className));
     }
 
@@ -197,12 +254,12 @@ public class Converters implements ShutdownHook {
         if (results == null) {
             results = new CopyOnWriteArraySet<>();
         }
-        results.add(clazz);
+        results.add(clazz.getCtClass().getName());
         addResultType(clazz.getSuperClass());
     }
 
     public synchronized boolean isResultType(CtClass clazz) {
-        return (results != null && results.contains(new CtClassWrapper(clazz)));
+        return (results != null && results.contains(clazz.getName()));
     }
 
     public void add(String transformer) {
@@ -214,6 +271,7 @@ public class Converters implements ShutdownHook {
     }
 
     private synchronized void addInternal(String transformer) throws Exception {
+        checkRegistration();
         CtClassWrapper tClass = fromClassName(transformer);
 
         CtMethod transformTo = findTransformTo(transformer, tClass.getCtClass());
@@ -241,68 +299,170 @@ public class Converters implements ShutdownHook {
 
         types.put(from, to);
 
+        if (converterTypes == null) {
+            converterTypes = new CopyOnWriteArraySet<>();
+        }
+        converterTypes.add(from.getCtClass().getName());
+
         fromTo.put(from, new ToConverter(tClass));
         toFrom.put(to, new FromConverter(tClass));
+
+        toTable = null;
+        fromTable = null;
     }
 
     public synchronized boolean hasConverter(CtClass clazz) {
-        return (types != null && types.containsKey(new CtClassWrapper(clazz)));
+        return (converterTypes != null && converterTypes.contains(clazz.getName()));
     }
 
     public Class<?> traverse(Class<?> start) {
-        return traverse(fromClass(start));
+        return getToTable().traverse(start);
     }
 
-    private Class<?> traverse(CtClassWrapper start) {
-        return toClass(traverseInternal(start));
+    public Object transformTo(Object value) {
+        return (value != null) ? getToTable().convert(value) : null;
     }
 
-    private synchronized CtClassWrapper traverseInternal(CtClassWrapper start) {
-        if (types == null) {
-            return start;
-        }
+    public Object transformFrom(Object value) {
+        return (value != null) ? getFromTable().convert(value) : null;
+    }
 
-        CtClassWrapper mapped = types.get(start);
-        if (mapped != null) {
-            return traverseInternal(mapped);
-        } else {
-            return start;
-        }
+    /**
+     * Convert all values, see #transformTo.
+     *
+     * @param values the values
+     * @return converted values, in the same order
+     */
+    public List<Object> transformAllTo(Collection<?> values) {
+        return transformAll(getToTable(), values, false);
     }
 
-    public Object transformTo(Object value) {
-        return convert(fromTo, value);
+    /**
+     * Convert all values, see #transformTo.
+     *
+     * @param values the values
+     * @param parallel convert large collections on the shared executor
+     * @return converted values, in the same order
+     */
+    public List<Object> transformAllTo(Collection<?> values, boolean parallel) {
+        return transformAll(getToTable(), values, parallel);
     }
 
-    public Object transformFrom(Object value) {
-        return convert(toFrom, value);
+    /**
+     * Convert all values, see #transformFrom.
+     *
+     * @param values the values
+     * @return converted values, in the same order
+     */
+    public List<Object> transformAllFrom(Collection<?> values) {
+        return transformAll(getFromTable(), values, false);
     }
 
-    private synchronized Object convert(Map<CtClassWrapper, Converter> map,  Object value) {
-        if (value == null) {
+    /**
+     * Convert all values, see #transformFrom.
+     *
+     * @param values the values
+     * @param parallel convert large collections on the shared executor
+     * @return converted values, in the same order
+     */
+    public List<Object> transformAllFrom(Collection<?> values, boolean parallel) {
+        return transformAll(getFromTable(), values, parallel);
+    }
+
+    private static List<Object> transformAll(final ConverterTable table, Collection<?> values, boolean parallel) {
+        if (values == null) {
             return null;
         }
+        final Object[] array = values.toArray();
+        if (table.isEmpty() == false) {
+            final ExecutorService executor = parallel ? ComponentRegistry.getInstance().getComponent(Keys.EXECUTOR_SERVICE) : null;
+            if (executor == null || array.length < PARALLEL_THRESHOLD) {
+                table.convertAll(array, 0, array.length);
+            } else {
+                transformAllParallel(table, array, executor);
+            }
+        }
+        return Arrays.asList(array);
+    }
 
-        if (map == null) {
-            return value;
+    private static void transformAllParallel(final ConverterTable table, final Object[] array, ExecutorService executor) {
+        final int parts = Math.min(Runtime.getRuntime().availableProcessors(), array.length / (PARALLEL_THRESHOLD / 4));
+        final int chunk = (array.length + parts - 1) / parts;
+        final ClassLoader cl = Utils.getTCCL();
+        final List<FutureTask<Void>> tasks = new ArrayList<>(parts);
+        for (int start = 0; start < array.length; start += chunk) {
+            final int from = start;
+            final int to = Math.min(start + chunk, array.length);
+            final FutureTask<Void> task = new FutureTask<>(new Runnable() {
+                public void run() {
+                    final ClassLoader previous = Utils.setTCCL(cl);
+                    try {
+                        table.convertAll(array, from, to);
+                    } finally {
+                        Utils.setTCCL(previous);
+                    }
+                }
+            }, null);
+            tasks.add(task);
+            if (to < array.length) {
+                executor.execute(task);
+            }
+        }
+        // run whatever the executor didn't pick up yet ourselves, so a busy executor can't stall us
+        for (FutureTask<Void> task : tasks) {
+            task.run();
+        }
+        try {
+            for (FutureTask<Void> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw Utils.toRuntimeException(e.getCause());
         }
+    }
 
-        CtClassWrapper clazz = fromObject(value);
-        Converter converter = map.get(clazz); // TODO match hierarchy?
-        if (converter != null) {
-            Object converted = converter.convert(value);
-            return convert(map, converted); // recurse -- check for loop?
-        } else {
-            return value;
+    private ConverterTable getToTable() {
+        ConverterTable table = toTable;
+        if (table == null) {
+            table = compileTables(true);
         }
+        return table;
     }
 
-    private CtClassWrapper fromObject(Object value) {
-        return fromClass(value.getClass());
+    private ConverterTable getFromTable() {
+        ConverterTable table = fromTable;
+        if (table == null) {
+            table = compileTables(false);
+        }
+        return table;
     }
 
-    private CtClassWrapper fromClass(Class<?> clazz) {
-        return fromClassName(clazz.getName());
+    private synchronized ConverterTable compileTables(boolean to) {
+        if (toTable == null || fromTable == null) {
+            if (types == null || types.isEmpty()) {
+                toTable = ConverterTable.EMPTY;
+                fromTable = ConverterTable.EMPTY;
+            } else {
+                final Map<Class<?>, Converter> toConverters = new HashMap<>();
+                final Map<Class<?>, Class<?>> toTargets = new HashMap<>();
+                final Map<Class<?>, Converter> fromConverters = new HashMap<>();
+                final Map<Class<?>, Class<?>> fromTargets = new HashMap<>();
+                for (Map.Entry<CtClassWrapper, CtClassWrapper> entry : types.entrySet()) {
+                    final Class<?> fromClass = toClass(entry.getKey());
+                    final Class<?> toClass = toClass(entry.getValue());
+                    toConverters.put(fromClass, fromTo.get(entry.getKey()));
+                    toTargets.put(fromClass, toClass);
+                    fromConverters.put(toClass, toFrom.get(entry.getValue()));
+                    fromTargets.put(toClass, fromClass);
+                }
+                toTable = new ConverterTable(toConverters, toTargets);
+                fromTable = new ConverterTable(fromConverters, fromTargets);
+            }
+        }
+        return to ? toTable : fromTable;
     }
 
     private CtClassWrapper fromClassName(String clazz) {
@@ -22,30 +22,122 @@
 
 package org.jboss.capedwarf.shared.jms;
 
-import java.util.Collections;
-import java.util.Map;
-import java.util.Set;
-import java.util.TreeSet;
-
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.StreamMessage;
 import javax.servlet.ServletContext;
-import javax.servlet.ServletRegistration;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.jboss.capedwarf.shared.components.ShutdownHook;
 import org.jboss.capedwarf.shared.servlet.AbstractHttpServletRequest;
 
 /**
  * Create ServletRequest.
  *
+ * In pooled mode requests are reset on #finish and handed out again by #reuse.
+ * Idle requests are kept by this creator, not by the dispatching threads, as those are
+ * usually shared executor threads, which would otherwise pin the app's servlet context and classloader.
+ * Only the request in use is bound to the thread, till #finish; #shutdown drops the idle ones.
+ * Only use it if the requests do not escape the dispatch, e.g. via async processing.
+ * Pooled request types must reset all their own state, see AbstractServletRequest#reset.
+ *
  * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
  */
-public abstract class AbstractServletRequestCreator implements ServletRequestCreator {
-    private static final String DEFAULT = "default";
+public abstract class AbstractServletRequestCreator implements ServletRequestCreator, ShutdownHook {
+    private static final int MAX_IDLE = 64;
+
+    private final Queue<AbstractHttpServletRequest> idle;
+    private final AtomicInteger idleCount;
+    private final ThreadLocal<AbstractHttpServletRequest> inUse;
+
+    protected AbstractServletRequestCreator() {
+        this(false);
+    }
+
+    /**
+     * @param pooled reuse requests
+     */
+    protected AbstractServletRequestCreator(boolean pooled) {
+        idle = pooled ? new ConcurrentLinkedQueue<AbstractHttpServletRequest>() : null;
+        idleCount = pooled ? new AtomicInteger() : null;
+        inUse = pooled ? new ThreadLocal<AbstractHttpServletRequest>() : null;
+    }
 
     public void prepare(HttpServletRequest request, String appId, String module) {
     }
 
+    /**
+     * Reset the request in use, if any, and pool it again.
+     * Overrides must call super.
+     */
     public void finish() {
+        if (inUse != null) {
+            final AbstractHttpServletRequest request = inUse.get();
+            if (request != null) {
+                inUse.remove();
+                request.reset();
+                if (idleCount.incrementAndGet() <= MAX_IDLE) {
+                    idle.offer(request);
+                } else {
+                    idleCount.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Get an idle pooled request, it's in use by this thread till #finish.
+     *
+     * @param context the servlet context
+     * @param type the exact request type
+     * @return reset request or null if not pooled or no matching request is idle
+     */
+    protected <T extends AbstractHttpServletRequest> T reuse(ServletContext context, Class<T> type) {
+        if (inUse != null && inUse.get() == null) {
+            final AbstractHttpServletRequest request = idle.poll();
+            if (request != null) {
+                idleCount.decrementAndGet();
+                if (request.getClass() == type && request.getServletContext() == context) {
+                    inUse.set(request);
+                    return type.cast(request);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Pool new request, it's in use by this thread till #finish.
+     *
+     * @param request the new request
+     * @return the request
+     */
+    protected <T extends AbstractHttpServletRequest> T use(T request) {
+        if (inUse != null) {
+            inUse.set(request);
+        }
+        return request;
+    }
+
+    /**
+     * Drop idle pooled requests, e.g. on app undeploy.
+     */
+    public void shutdown() {
+        clear();
+    }
+
+    public void clear() {
+        if (idle != null) {
+            while (idle.poll() != null) {
+                idleCount.decrementAndGet();
+            }
+        }
     }
 
     public boolean isValid(HttpServletRequest request, HttpServletResponse response) {
@@ -75,39 +167,30 @@ public abstract class AbstractServletRequestCreator implements ServletRequestCre
     }
 
     /**
-     * Very simple matching, TODO fix.
+     * Stream message body as request body, if it's a bytes or stream message.
+     * The body is read from the message on demand, not copied.
+     *
+     * @param request the request
+     * @param message the message
+     * @throws JMSException for any JMS error
      */
-    protected String match(String mapping, String path) {
-        boolean star = false;
-        while(mapping.endsWith("*")) {
-            star = true;
-            mapping = mapping.substring(0, mapping.length() - 1);
-        }
-        if (star && mapping.endsWith("/")) {
-            mapping = mapping.substring(0, mapping.length() - 1);
+    protected void applyBody(AbstractHttpServletRequest request, Message message) throws JMSException {
+        if (message instanceof BytesMessage) {
+            final BytesMessage bytes = (BytesMessage) message;
+            request.setBody(MessageInputStreams.forBytes(bytes), bytes.getBodyLength());
+        } else if (message instanceof StreamMessage) {
+            request.setBody(MessageInputStreams.forStream((StreamMessage) message), -1);
         }
-        return (path.startsWith(mapping) ? mapping : null);
     }
 
     protected String getServletPath(ServletContext context, String path) {
-        Map<String, ? extends ServletRegistration> map = context.getServletRegistrations();
-        Set<String> longestMatch = new TreeSet<>(Collections.reverseOrder());
-        for (Map.Entry<String, ? extends ServletRegistration> entry : map.entrySet()) {
-            if (DEFAULT.equalsIgnoreCase(entry.getKey())) {
-                continue;
-            }
-            for (String mapping : entry.getValue().getMappings()) {
-                final String sp = match(mapping, path);
-                if (sp != null) {
-                    longestMatch.add(sp);
-                }
-            }
-        }
-        if (longestMatch.isEmpty()) {
+        final String appId = (String) context.getAttribute("org.jboss.capedwarf.appId");
+        final String module = (String) context.getAttribute("org.jboss.capedwarf.module");
+        final String servletPath = ServletPathMatcher.getInstance(appId, module).match(path);
+        if (servletPath == null) {
             throw new IllegalArgumentException("Could not find a match for path: " + path);
-        } else {
-            return longestMatch.iterator().next();
         }
+        return servletPath;
     }
 
     protected static boolean isStatus2xx(HttpServletResponse response) {
@@ -0,0 +1,479 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.capedwarf.shared.jms;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.jms.BytesMessage;
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.jms.StreamMessage;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.jboss.capedwarf.shared.components.AppIdFactory;
+import org.jboss.capedwarf.shared.components.ComponentRegistry;
+import org.jboss.capedwarf.shared.components.Keys;
+import org.jboss.capedwarf.shared.components.SimpleAppIdFactory;
+import org.jboss.capedwarf.shared.config.QueueXml;
+import org.jboss.capedwarf.shared.util.Utils;
+
+/**
+ * Batched task dispatch.
+ *
+ * Receives up to a batch of this app / module's messages from the shared Keys.QUEUE in one transacted session,
+ * dispatches them to the servlet on at most #concurrency workers (the shared executor plus the caller),
+ * and settles each message on its own: valid responses are consumed,
+ * failed ones are scheduled back with an incremented attempt count and a backoff, until their retry limits.
+ * The whole batch is then committed at once, so there is one broker round trip per batch.
+ *
+ * With queue.xml set, each message belongs to the queue named by its queue property (else the default queue):
+ * its retry parameters apply, and its QueueLimiter, shared by the queue's dispatchers, enforces rate and max concurrent requests.
+ * A message only joins the batch if its limiter grants a permit right away; otherwise it is scheduled back
+ * after the limiter's delay, without using an attempt, and the batch is closed.
+ * So the batch is sized by the available permits, and no dispatch waits on a limiter inside the transaction.
+ *
+ * Each message still goes through the single message contract of the ServletRequestCreator:
+ * createServletRequest, prepare, dispatch, isValid and finish, all on the same worker thread.
+ *
+ * JMS defines a session and its messages as single threaded. All session calls (receive, send, commit, rollback)
+ * stay on the calling thread, but with #concurrency above 1 the workers read the received messages' properties
+ * and bodies, which are streamed on demand, not copied. That relies on the provider's received messages being
+ * safe to read from another thread, as HornetQ's regular (not large) messages are; otherwise use concurrency 1.
+ *
+ * Not thread safe, use one instance per receiving thread.
+ *
+ * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
+ */
+public class BatchMessageDispatcher implements AutoCloseable {
+    private static final Logger log = Logger.getLogger(BatchMessageDispatcher.class.getName());
+
+    /**
+     * Max attempts of messages which don't set their own, so a failing task can't retry forever.
+     */
+    public static final int DEFAULT_MAX_ATTEMPTS = 100;
+    private static final QueueXml.RetryParameters DEFAULT_RETRY_PARAMETERS = new QueueXml.RetryParameters();
+
+    private final ServletContext context;
+    private final ServletRequestCreator creator;
+    private final Handler handler;
+    private final String appId;
+    private final String module;
+    private final int concurrency;
+    private QueueXml queueXml;
+
+    private Connection connection;
+    private Session session;
+    private MessageConsumer consumer;
+    private MessageProducer producer;
+
+    /**
+     * @param context the servlet context
+     * @param creator the request creator
+     * @param handler the servlet invocation
+     * @param appId the app id
+     * @param module the module
+     * @param concurrency max concurrent dispatches
+     */
+    public BatchMessageDispatcher(ServletContext context, ServletRequestCreator creator, Handler handler, String appId, String module, int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be positive: " + concurrency);
+        }
+        this.context = context;
+        this.creator = creator;
+        this.handler = handler;
+        this.appId = appId;
+        this.module = module;
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * @param queueXml the app's queue.xml, null for no limits and default retry parameters
+     */
+    public void setQueueXml(QueueXml queueXml) {
+        this.queueXml = queueXml;
+    }
+
+    private void open() throws JMSException {
+        if (connection == null) {
+            final ComponentRegistry registry = ComponentRegistry.getInstance();
+            final ConnectionFactory factory = registry.getComponent(Keys.CONNECTION_FACTORY);
+            final Queue queue = registry.getComponent(Keys.QUEUE);
+            if (factory == null || queue == null) {
+                throw new IllegalStateException("No JMS connection factory or queue registered!");
+            }
+            final Connection c = factory.createConnection();
+            try {
+                session = c.createSession(true, Session.SESSION_TRANSACTED);
+                consumer = session.createConsumer(queue, toSelector());
+                producer = session.createProducer(queue);
+                c.start();
+            } catch (JMSException e) {
+                c.close();
+                throw e;
+            }
+            connection = c;
+        }
+    }
+
+    /**
+     * Only this app / module's messages, the JMS queue is shared by all apps.
+     */
+    private String toSelector() {
+        return toCondition(MessageConstants.APP_ID, appId) + " AND " + toCondition(MessageConstants.MODULE, module);
+    }
+
+    private static String toCondition(String name, String value) {
+        final String property = MessageConstants.PREFIX + name;
+        return (value == null) ? property + " IS NULL" : property + " = '" + value.replace("'", "''") + "'";
+    }
+
+    public void close() throws JMSException {
+        if (connection != null) {
+            try {
+                connection.close();
+            } finally {
+                connection = null;
+                session = null;
+                consumer = null;
+                producer = null;
+            }
+        }
+    }
+
+    /**
+     * Receive and dispatch one batch.
+     *
+     * @param maxBatch max messages in the batch
+     * @param timeout how long to wait for the first message, in millis
+     * @return number of dispatched messages, 0 on timeout
+     * @throws JMSException for any JMS error, the batch is rolled back on any error
+     */
+    public int dispatchBatch(int maxBatch, long timeout) throws JMSException {
+        open();
+        final List<Message> batch = new ArrayList<>(Math.min(maxBatch, 64));
+        final List<QueueLimiter> permits = new ArrayList<>(Math.min(maxBatch, 64));
+        AtomicReferenceArray<QueueLimiter> limiters = null;
+        try {
+            Message message = consumer.receive(timeout);
+            while (message != null) {
+                final QueueLimiter limiter = getLimiter(message);
+                if (limiter != null && limiter.tryAcquire() == false) {
+                    // no permit, don't hold the batch open for it
+                    resend(message, TimeUnit.NANOSECONDS.toMillis(limiter.getRetryDelayNanos()));
+                    break;
+                }
+                batch.add(message);
+                permits.add(limiter);
+                message = (batch.size() < maxBatch) ? consumer.receiveNoWait() : null;
+            }
+            limiters = new AtomicReferenceArray<>(permits.toArray(new QueueLimiter[permits.size()]));
+            if (batch.isEmpty() == false) {
+                final boolean[] valid = dispatch(batch, limiters);
+                for (int i = 0; i < valid.length; i++) {
+                    if (valid[i] == false) {
+                        retry(batch.get(i));
+                    }
+                }
+            }
+            session.commit();
+        } catch (Throwable t) {
+            try {
+                session.rollback();
+            } catch (JMSException e) {
+                t.addSuppressed(e);
+            }
+            throw t;
+        } finally {
+            if (limiters == null) {
+                for (QueueLimiter limiter : permits) {
+                    if (limiter != null) {
+                        limiter.release();
+                    }
+                }
+            } else {
+                for (int i = 0; i < limiters.length(); i++) {
+                    release(limiters, i);
+                }
+            }
+        }
+        return batch.size();
+    }
+
+    private QueueXml.Queue getQueue(Message message) throws JMSException {
+        if (queueXml == null) {
+            return null;
+        }
+        final Map<String, QueueXml.Queue> queues = queueXml.getQueues();
+        final String property = MessageConstants.PREFIX + MessageConstants.QUEUE;
+        final String name = message.propertyExists(property) ? message.getStringProperty(property) : null;
+        final QueueXml.Queue queue = (name != null) ? queues.get(name) : null;
+        return (queue != null) ? queue : queues.get(QueueXml.DEFAULT);
+    }
+
+    private QueueLimiter getLimiter(Message message) throws JMSException {
+        final QueueXml.Queue queue = getQueue(message);
+        return (queue != null) ? QueueLimiter.getInstance(appId, module, queue) : null;
+    }
+
+    private static void release(AtomicReferenceArray<QueueLimiter> limiters, int i) {
+        final QueueLimiter limiter = limiters.getAndSet(i, null);
+        if (limiter != null) {
+            limiter.release();
+        }
+    }
+
+    /**
+     * Dispatch messages, on at most #concurrency threads.
+     * Workers only read the messages (see class doc), and never touch the session.
+     *
+     * @param messages the messages
+     * @param limiters messages' acquired limiters, each released once its message is dispatched
+     * @return valid flags, in messages' order
+     */
+    protected boolean[] dispatch(final List<Message> messages, final AtomicReferenceArray<QueueLimiter> limiters) {
+        final boolean[] valid = new boolean[messages.size()];
+        final AtomicInteger next = new AtomicInteger();
+        final Runnable worker = new Runnable() {
+            public void run() {
+                int i;
+                while ((i = next.getAndIncrement()) < valid.length) {
+                    try {
+                        valid[i] = dispatch(messages.get(i));
+                    } finally {
+                        release(limiters, i);
+                    }
+                }
+            }
+        };
+
+        final int workers = Math.min(concurrency, valid.length);
+        final ExecutorService executor = (workers > 1) ? ComponentRegistry.getInstance().getComponent(Keys.EXECUTOR_SERVICE) : null;
+        if (executor == null) {
+            worker.run();
+            return valid;
+        }
+
+        final ClassLoader cl = Utils.getTCCL();
+        final List<FutureTask<Void>> tasks = new ArrayList<>(workers - 1);
+        for (int w = 1; w < workers; w++) {
+            final FutureTask<Void> task = new FutureTask<>(new Runnable() {
+                public void run() {
+                    final ClassLoader previous = Utils.setTCCL(cl);
+                    AppIdFactory.setCurrentFactory(new SimpleAppIdFactory(appId, module));
+                    try {
+                        worker.run();
+                    } finally {
+                        AppIdFactory.resetCurrentFactory();
+                        Utils.setTCCL(previous);
+                    }
+                }
+            }, null);
+            tasks.add(task);
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                break; // fewer workers then, the rejected task is run below like any unstarted one
+            }
+        }
+        worker.run();
+        // a busy executor can't stall us, tasks not yet started simply find no work left
+        for (FutureTask<Void> task : tasks) {
+            task.run();
+        }
+        try {
+            for (FutureTask<Void> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw Utils.toRuntimeException(e.getCause());
+        }
+        return valid;
+    }
+
+    /**
+     * Dispatch single message.
+     *
+     * @param message the message
+     * @return true if response is valid, false otherwise
+     */
+    protected boolean dispatch(Message message) {
+        try {
+            final HttpServletRequest request = creator.createServletRequest(context, message);
+            try {
+                creator.prepare(request, appId, module);
+                final HttpServletResponse response = handler.handle(request);
+                return creator.isValid(request, response);
+            } finally {
+                creator.finish();
+            }
+        } catch (Exception e) {
+            log.log(Level.WARNING, String.format("Failed to dispatch message %s.", getMessageId(message)), e);
+            return false;
+        }
+    }
+
+    /**
+     * Schedule failed message back to the queue, after its queue's backoff, unless it reached its retry limits.
+     *
+     * Max attempts come from the message, else from the queue's task-retry-limit.
+     * With a task-age-limit too, the task is only dropped once both are reached, like on App Engine.
+     * With neither, #DEFAULT_MAX_ATTEMPTS applies; a negative max attempts on the message means no limit.
+     *
+     * @param message the failed message
+     * @throws JMSException for any JMS error
+     */
+    protected void retry(Message message) throws JMSException {
+        final QueueXml.Queue queue = getQueue(message);
+        final QueueXml.RetryParameters parameters = (queue != null) ? queue.getRetryParameters() : DEFAULT_RETRY_PARAMETERS;
+        final int attempts = getIntProperty(message, MessageConstants.ATTEMPTS, 0) + 1;
+        final int maxAttempts = getMaxAttempts(message, parameters);
+        final long created = getCreated(message);
+        final long ageLimit = parameters.getTaskAgeLimit();
+        final boolean attemptsReached = (maxAttempts < 0) || (attempts >= maxAttempts);
+        final boolean ageReached = (ageLimit < 0) || (System.currentTimeMillis() - created >= TimeUnit.SECONDS.toMillis(ageLimit));
+        if ((maxAttempts >= 0 || ageLimit >= 0) && attemptsReached && ageReached) {
+            log.warning(String.format("Message %s failed %s time(s), retry limits reached, dropping it.", message.getJMSMessageID(), attempts));
+            return;
+        }
+
+        final Map<String, Object> properties = copyProperties(message);
+        properties.put(MessageConstants.PREFIX + MessageConstants.ATTEMPTS, attempts);
+        properties.put(MessageConstants.PREFIX + MessageConstants.CREATED, created);
+        resend(message, properties, (long) (parameters.getBackoffSeconds(attempts) * 1000));
+    }
+
+    private static int getMaxAttempts(Message message, QueueXml.RetryParameters parameters) throws JMSException {
+        if (message.propertyExists(MessageConstants.PREFIX + MessageConstants.MAX_ATTEMPTS)) {
+            return getIntProperty(message, MessageConstants.MAX_ATTEMPTS, -1);
+        }
+        if (parameters.getTaskRetryLimit() >= 0) {
+            return parameters.getTaskRetryLimit() + 1; // first attempt is not a retry
+        }
+        return (parameters.getTaskAgeLimit() >= 0) ? -1 : DEFAULT_MAX_ATTEMPTS;
+    }
+
+    private static long getCreated(Message message) throws JMSException {
+        final String property = MessageConstants.PREFIX + MessageConstants.CREATED;
+        if (message.propertyExists(property)) {
+            return message.getLongProperty(property);
+        }
+        final long timestamp = message.getJMSTimestamp(); // still the original send, before any retry
+        return (timestamp > 0) ? timestamp : System.currentTimeMillis();
+    }
+
+    /**
+     * Schedule message back as is, e.g. when its queue has no permit, it doesn't use an attempt.
+     * It keeps its creation time though, the new send resets its JMS timestamp.
+     *
+     * @param message the message
+     * @param delay the delay, in millis
+     * @throws JMSException for any JMS error
+     */
+    protected void resend(Message message, long delay) throws JMSException {
+        final Map<String, Object> properties = copyProperties(message);
+        properties.put(MessageConstants.PREFIX + MessageConstants.CREATED, getCreated(message));
+        resend(message, properties, delay);
+    }
+
+    /**
+     * Received message properties are read-only, copy them over.
+     */
+    private static Map<String, Object> copyProperties(Message message) throws JMSException {
+        final Map<String, Object> properties = new LinkedHashMap<>();
+        final Enumeration<?> names = message.getPropertyNames();
+        while (names.hasMoreElements()) {
+            final String name = (String) names.nextElement();
+            if (name.startsWith("JMSX") == false) {
+                properties.put(name, message.getObjectProperty(name));
+            }
+        }
+        return properties;
+    }
+
+    private void resend(Message message, Map<String, Object> properties, long delay) throws JMSException {
+        message.clearProperties();
+        for (Map.Entry<String, Object> entry : properties.entrySet()) {
+            message.setObjectProperty(entry.getKey(), entry.getValue());
+        }
+        message.setLongProperty(MessageConstants.SCHEDULED_DELIVERY, System.currentTimeMillis() + delay);
+
+        // body may have been (partly) streamed already
+        if (message instanceof BytesMessage) {
+            ((BytesMessage) message).reset();
+        } else if (message instanceof StreamMessage) {
+            ((StreamMessage) message).reset();
+        }
+        producer.send(message);
+    }
+
+    private static int getIntProperty(Message message, String name, int defaultValue) throws JMSException {
+        final String property = MessageConstants.PREFIX + name;
+        return message.propertyExists(property) ? message.getIntProperty(property) : defaultValue;
+    }
+
+    private static String getMessageId(Message message) {
+        try {
+            return message.getJMSMessageID();
+        } catch (JMSException e) {
+            return String.valueOf(message);
+        }
+    }
+
+    /**
+     * Invoke the servlet.
+     */
+    public interface Handler {
+        /**
+         * Handle request.
+         *
+         * @param request the request
+         * @return the response
+         * @throws Exception for any error
+         */
+        HttpServletResponse handle(HttpServletRequest request) throws Exception;
+    }
+}
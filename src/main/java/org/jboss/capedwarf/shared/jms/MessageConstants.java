@@ -35,4 +35,9 @@ public final class MessageConstants {
     public static final String PATH = "path";
     public static final String FACTORY = "factory";
     public static final String MAX_ATTEMPTS = "max_attempts";
+    public static final String ATTEMPTS = "attempts";
+    public static final String QUEUE = "queue"; // queue.xml queue name
+    public static final String CREATED = "created"; // first enqueue time, in millis, set on first retry
+    // broker's scheduled delivery time, in millis, not prefixed
+    public static final String SCHEDULED_DELIVERY = "_HQ_SCHED_DELIVERY";
 }
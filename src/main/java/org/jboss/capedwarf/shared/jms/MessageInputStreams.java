@@ -0,0 +1,131 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.capedwarf.shared.jms;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.MessageEOFException;
+import javax.jms.StreamMessage;
+
+/**
+ * Read JMS message bodies as InputStream, chunk by chunk, without buffering the whole body.
+ *
+ * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
+ */
+final class MessageInputStreams {
+    private static final int CHUNK_SIZE = 8192;
+
+    private MessageInputStreams() {
+    }
+
+    static InputStream forBytes(final BytesMessage message) {
+        return new MessageInputStream() {
+            protected int readChunk(byte[] chunk) throws JMSException {
+                return message.readBytes(chunk);
+            }
+        };
+    }
+
+    /**
+     * StreamMessage body is read as its consecutive byte[] fields.
+     */
+    static InputStream forStream(final StreamMessage message) {
+        return new MessageInputStream() {
+            protected int readChunk(byte[] chunk) throws JMSException {
+                try {
+                    int n = message.readBytes(chunk);
+                    // -1 ends the current (or an empty / null) byte[] field, move on to the next one
+                    while (n < 0) {
+                        n = message.readBytes(chunk);
+                    }
+                    return n;
+                } catch (MessageEOFException e) {
+                    return -1;
+                }
+            }
+        };
+    }
+
+    private abstract static class MessageInputStream extends InputStream {
+        private final byte[] chunk = new byte[CHUNK_SIZE];
+        private int position;
+        private int limit;
+        private boolean eof;
+
+        /**
+         * Read next chunk.
+         *
+         * @param chunk the buffer to fill, from 0
+         * @return bytes read or -1 at the end of body
+         * @throws JMSException for any JMS error
+         */
+        protected abstract int readChunk(byte[] chunk) throws JMSException;
+
+        private boolean fill() throws IOException {
+            while (position == limit) {
+                if (eof) {
+                    return false;
+                }
+                final int n;
+                try {
+                    n = readChunk(chunk);
+                } catch (JMSException e) {
+                    throw new IOException(e);
+                }
+                if (n < 0) {
+                    eof = true;
+                    return false;
+                }
+                position = 0;
+                limit = n;
+            }
+            return true;
+        }
+
+        public int read() throws IOException {
+            return fill() ? (chunk[position++] & 0xFF) : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (fill() == false) {
+                return -1;
+            }
+            final int n = Math.min(len, limit - position);
+            System.arraycopy(chunk, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return limit - position;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.capedwarf.shared.jms;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.jboss.capedwarf.shared.components.BaseKey;
+import org.jboss.capedwarf.shared.components.ComponentRegistry;
+import org.jboss.capedwarf.shared.components.Key;
+import org.jboss.capedwarf.shared.config.QueueXml;
+
+/**
+ * Per queue dispatch limiter, from queue.xml rate, bucket-size and max-concurrent-requests.
+ *
+ * The token bucket is kept as a single theoretical arrival time (GCRA):
+ * each task moves it one emission interval ahead, and a task is allowed
+ * while it is at most bucket-size - 1 intervals ahead of now.
+ * Both the bucket and the concurrent request count are plain CAS loops, no locks.
+ *
+ * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
+ */
+public final class QueueLimiter {
+    private static final long MIN_PARK = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long PAUSED_PARK = TimeUnit.SECONDS.toNanos(1);
+    private static final long SLOT_RETRY_DELAY = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final long interval; // nanos per task, 0 -- no rate limit, -1 -- paused
+    private final long tolerance; // burst, in nanos
+    private final int maxConcurrent; // 0 -- no limit
+
+    private final AtomicLong arrival;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * @param rate tasks per second, 0 pauses the queue, infinity disables rate limit
+     * @param bucketSize max burst
+     * @param maxConcurrent max concurrent dispatches, 0 for no limit
+     */
+    public QueueLimiter(double rate, int bucketSize, int maxConcurrent) {
+        if (rate < 0 || Double.isNaN(rate)) {
+            throw new IllegalArgumentException("Invalid rate: " + rate);
+        }
+        if (rate == 0) {
+            interval = -1;
+        } else if (Double.isInfinite(rate)) {
+            interval = 0;
+        } else {
+            interval = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / rate));
+        }
+        tolerance = Math.max(0L, interval) * (Math.max(bucketSize, 1) - 1);
+        this.maxConcurrent = Math.max(maxConcurrent, 0);
+        this.arrival = new AtomicLong(System.nanoTime());
+    }
+
+    public static QueueLimiter forQueue(QueueXml.Queue queue) {
+        return new QueueLimiter(queue.getRate(), queue.getBucketSize(), queue.getMaxConcurrentRequests());
+    }
+
+    /**
+     * Get app's shared limiter for the queue.
+     *
+     * @param appId the app id
+     * @param module the module
+     * @param queue the queue
+     * @return the limiter
+     */
+    public static QueueLimiter getInstance(String appId, String module, QueueXml.Queue queue) {
+        Key<QueueLimiter> key = new BaseKey<>(appId, module, QueueLimiter.class.getName() + "#" + queue.getName(), QueueLimiter.class);
+        ComponentRegistry registry = ComponentRegistry.getInstance();
+        QueueLimiter limiter = registry.getComponent(key);
+        if (limiter == null) {
+            limiter = forQueue(queue);
+            QueueLimiter previous = registry.putIfAbsent(key, limiter);
+            if (previous != null) {
+                limiter = previous;
+            }
+        }
+        return limiter;
+    }
+
+    public boolean isPaused() {
+        return interval < 0;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Try to take a token and a concurrent request slot, without waiting.
+     * On success #release must be called once the dispatch is done.
+     *
+     * @return true if acquired, false otherwise
+     */
+    public boolean tryAcquire() {
+        if (tryAcquireSlot() == false) {
+            return false;
+        }
+        if (tryAcquireToken(System.nanoTime()) == false) {
+            inFlight.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Wait for a token and a concurrent request slot.
+     * On success #release must be called once the dispatch is done.
+     *
+     * @return true if acquired, false if interrupted
+     */
+    public boolean acquire() {
+        while (tryAcquire() == false) {
+            LockSupport.parkNanos(this, Math.max(getDelayNanos(), MIN_PARK));
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * @return nanos till the next token
+     */
+    public long getDelayNanos() {
+        if (interval < 0) {
+            return PAUSED_PARK;
+        }
+        final long now = System.nanoTime();
+        final long ahead = arrival.get() - now;
+        return Math.max(ahead - tolerance, 0L);
+    }
+
+    /**
+     * How long to put off a task which didn't get a permit.
+     * A slot frees up whenever a dispatch ends, which we can't predict,
+     * so with all of them taken this is never less than a fixed minimum.
+     *
+     * @return nanos till a new #tryAcquire is worth it
+     */
+    public long getRetryDelayNanos() {
+        final long delay = getDelayNanos();
+        if (maxConcurrent > 0 && inFlight.get() >= maxConcurrent) {
+            return Math.max(delay, SLOT_RETRY_DELAY);
+        }
+        return delay;
+    }
+
+    private boolean tryAcquireSlot() {
+        if (maxConcurrent == 0) {
+            inFlight.incrementAndGet();
+            return true;
+        }
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= maxConcurrent) {
+                return false;
+            }
+        } while (inFlight.compareAndSet(current, current + 1) == false);
+        return true;
+    }
+
+    private boolean tryAcquireToken(long now) {
+        if (interval <= 0) {
+            return (interval == 0);
+        }
+        long tat;
+        long next;
+        do {
+            tat = arrival.get();
+            final long start = (tat - now > 0) ? tat : now;
+            if (start - now > tolerance) {
+                return false;
+            }
+            next = start + interval;
+        } while (arrival.compareAndSet(tat, next) == false);
+        return true;
+    }
+}
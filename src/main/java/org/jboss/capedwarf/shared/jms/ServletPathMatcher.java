@@ -0,0 +1,220 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.capedwarf.shared.jms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletRegistration;
+
+import org.jboss.capedwarf.shared.components.ComponentRegistry;
+import org.jboss.capedwarf.shared.components.Key;
+import org.jboss.capedwarf.shared.components.SimpleKey;
+
+/**
+ * Servlet path lookup, compiled once per app / module at deploy, see CapedwarfListener.
+ *
+ * Mappings follow the servlet spec order: exact, longest path prefix, extension, default.
+ * Exact and prefix mappings share one char trie, extensions have their own,
+ * so a lookup walks the path once and only allocates the resulting servlet path.
+ *
+ * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
+ */
+public final class ServletPathMatcher {
+    private static final String DEFAULT = "default";
+
+    private final Node paths = new Node();
+    private final Node extensions = new Node();
+    private final boolean contextRoot;
+    private final boolean defaultServlet;
+
+    public ServletPathMatcher(Iterable<String> mappings) {
+        boolean root = false;
+        boolean def = false;
+        for (String mapping : mappings) {
+            if (mapping.length() == 0) {
+                root = true;
+            } else if ("/".equals(mapping)) {
+                def = true;
+            } else if (mapping.startsWith("*.")) {
+                extensions.add(mapping, 2, mapping.length()).exact = true;
+            } else if (mapping.endsWith("/*")) {
+                paths.add(mapping, 0, mapping.length() - 2).prefix = true;
+            } else {
+                paths.add(mapping, 0, mapping.length()).exact = true;
+            }
+        }
+        contextRoot = root;
+        defaultServlet = def;
+    }
+
+    /**
+     * Build app / module's matcher from context's servlet mappings.
+     *
+     * @param appId the app id
+     * @param module the module
+     * @param context the servlet context
+     */
+    public static void initialize(String appId, String module, ServletContext context) {
+        ComponentRegistry.getInstance().setComponent(toKey(appId, module), new ServletPathMatcher(getMappings(context.getServletRegistrations())));
+    }
+
+    public static void destroy(String appId, String module) {
+        ComponentRegistry.getInstance().removeComponent(toKey(appId, module));
+    }
+
+    /**
+     * Get app / module's matcher.
+     *
+     * @param appId the app id
+     * @param module the module
+     * @return the matcher
+     * @throws IllegalStateException if it was not initialized at deploy
+     */
+    public static ServletPathMatcher getInstance(String appId, String module) {
+        final ServletPathMatcher matcher = ComponentRegistry.getInstance().getComponent(toKey(appId, module));
+        if (matcher == null) {
+            throw new IllegalStateException(String.format("No servlet path matcher for %s/%s, is CapedwarfListener registered?", appId, module));
+        }
+        return matcher;
+    }
+
+    private static Key<ServletPathMatcher> toKey(String appId, String module) {
+        return new SimpleKey<>(appId, module, ServletPathMatcher.class);
+    }
+
+    /**
+     * Match path.
+     *
+     * @param path the path, without query string
+     * @return servlet path or null if no mapping matches
+     */
+    public String match(String path) {
+        final int length = path.length();
+
+        // exact and longest prefix, in one walk
+        int prefix = -1;
+        Node node = paths;
+        int i = 0;
+        while (true) {
+            if (node.prefix && (i == length || path.charAt(i) == '/')) {
+                prefix = i;
+            }
+            if (i == length) {
+                if (node.exact) {
+                    return path;
+                }
+                break;
+            }
+            node = node.child(path.charAt(i++));
+            if (node == null) {
+                break;
+            }
+        }
+        if (prefix >= 0) {
+            return (prefix == length) ? path : path.substring(0, prefix);
+        }
+
+        // extension of the last segment
+        final int dot = path.lastIndexOf('.');
+        if (dot > path.lastIndexOf('/')) {
+            node = extensions;
+            for (i = dot + 1; node != null && i < length; i++) {
+                node = node.child(path.charAt(i));
+            }
+            if (node != null && node.exact) {
+                return path;
+            }
+        }
+
+        if (contextRoot && length == 1 && path.charAt(0) == '/') {
+            return "";
+        }
+        return defaultServlet ? path : null;
+    }
+
+    private static final class Node {
+        private static final char[] NO_KEYS = new char[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        private char[] keys = NO_KEYS; // sorted
+        private Node[] children = NO_CHILDREN;
+        private boolean exact;
+        private boolean prefix;
+
+        private Node child(char c) {
+            final int index = Arrays.binarySearch(keys, c);
+            return (index >= 0) ? children[index] : null;
+        }
+
+        private Node add(String mapping, int from, int to) {
+            Node node = this;
+            for (int i = from; i < to; i++) {
+                final char c = mapping.charAt(i);
+                final int index = Arrays.binarySearch(node.keys, c);
+                if (index >= 0) {
+                    node = node.children[index];
+                } else {
+                    final int insert = -index - 1;
+                    final Node child = new Node();
+                    node.keys = insert(node.keys, insert, c);
+                    node.children = insert(node.children, insert, child);
+                    node = child;
+                }
+            }
+            return node;
+        }
+
+        private static char[] insert(char[] array, int index, char c) {
+            final char[] copy = new char[array.length + 1];
+            System.arraycopy(array, 0, copy, 0, index);
+            copy[index] = c;
+            System.arraycopy(array, index, copy, index + 1, array.length - index);
+            return copy;
+        }
+
+        private static Node[] insert(Node[] array, int index, Node node) {
+            final Node[] copy = new Node[array.length + 1];
+            System.arraycopy(array, 0, copy, 0, index);
+            copy[index] = node;
+            System.arraycopy(array, index, copy, index + 1, array.length - index);
+            return copy;
+        }
+    }
+
+    /**
+     * All mappings, but the container's default servlet ones.
+     */
+    private static List<String> getMappings(Map<String, ? extends ServletRegistration> registrations) {
+        final List<String> mappings = new ArrayList<>();
+        for (Map.Entry<String, ? extends ServletRegistration> entry : registrations.entrySet()) {
+            if (DEFAULT.equalsIgnoreCase(entry.getKey()) == false) {
+                mappings.addAll(entry.getValue().getMappings());
+            }
+        }
+        return mappings;
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.capedwarf.shared.reflection;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import org.jboss.capedwarf.shared.util.Utils;
+
+/**
+ * Cache field invocation, backed by MethodHandle getter.
+ *
+ * @param <T> exact field type
+ * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
+ */
+public class FieldHandleInvocation<T> extends FieldInvocation<T> {
+    private final MethodHandle getter; // (Object target)Object
+
+    FieldHandleInvocation(Field field) {
+        this(null, field);
+    }
+
+    FieldHandleInvocation(Object target, Field field) {
+        super(target, field);
+        try {
+            MethodHandle mh = MethodHandles.lookup().unreflectGetter(field);
+            if (Modifier.isStatic(field.getModifiers())) {
+                mh = MethodHandles.dropArguments(mh, 0, Object.class);
+            }
+            getter = mh.asType(MethodType.genericMethodType(1));
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public T invoke(final Object object) {
+        try {
+            return (T) getter.invokeExact(object);
+        } catch (Throwable t) {
+            throw Utils.toRuntimeException(t);
+        }
+    }
+}
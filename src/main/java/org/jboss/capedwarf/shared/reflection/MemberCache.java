@@ -0,0 +1,118 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.capedwarf.shared.reflection;
+
+import java.lang.reflect.Member;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Member lookup cache, segmented per classloader.
+ *
+ * Negative lookups are cached as well.
+ * Each segment is bounded; once full, new lookups are simply not cached.
+ * Segments must be released on undeploy, see ReflectionUtils#releaseCache.
+ *
+ * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
+ */
+final class MemberCache {
+    static final Object NOT_FOUND = new Object();
+
+    private static final int MAX_ENTRIES = 1024;
+    private static final Object BOOTSTRAP = new Object();
+
+    private final ConcurrentMap<Object, ConcurrentMap<MemberKey, Object>> segments = new ConcurrentHashMap<>();
+
+    private static Object toSegmentKey(ClassLoader cl) {
+        return (cl != null) ? cl : BOOTSTRAP;
+    }
+
+    private ConcurrentMap<MemberKey, Object> getSegment(Class<?> clazz, boolean create) {
+        final Object sk = toSegmentKey(clazz.getClassLoader());
+        ConcurrentMap<MemberKey, Object> segment = segments.get(sk);
+        if (segment == null && create) {
+            segment = new ConcurrentHashMap<>();
+            ConcurrentMap<MemberKey, Object> previous = segments.putIfAbsent(sk, segment);
+            if (previous != null) {
+                segment = previous;
+            }
+        }
+        return segment;
+    }
+
+    /**
+     * Get cached member.
+     *
+     * @return member, NOT_FOUND or null if not cached
+     */
+    Object get(Class<?> clazz, String name, Class[] types) {
+        final ConcurrentMap<MemberKey, Object> segment = getSegment(clazz, false);
+        return (segment != null) ? segment.get(new MemberKey(clazz, name, types)) : null;
+    }
+
+    /**
+     * Cache member or NOT_FOUND.
+     */
+    void put(Class<?> clazz, String name, Class[] types, Object member) {
+        if (member instanceof Member == false && member != NOT_FOUND) {
+            throw new IllegalArgumentException("Not a member: " + member);
+        }
+        final ConcurrentMap<MemberKey, Object> segment = getSegment(clazz, true);
+        if (segment.size() < MAX_ENTRIES) {
+            segment.putIfAbsent(new MemberKey(clazz, name, (types != null) ? types.clone() : null), member);
+        }
+    }
+
+    void release(ClassLoader cl) {
+        segments.remove(toSegmentKey(cl));
+    }
+
+    private static final class MemberKey {
+        private final Class<?> clazz;
+        private final String name;
+        private final Class[] types; // null for fields
+        private final int hash;
+
+        private MemberKey(Class<?> clazz, String name, Class[] types) {
+            this.clazz = clazz;
+            this.name = name;
+            this.types = types;
+            this.hash = 31 * (31 * clazz.hashCode() + name.hashCode()) + Arrays.hashCode(types);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof MemberKey == false) {
+                return false;
+            }
+            MemberKey other = (MemberKey) obj;
+            return clazz == other.clazz && name.equals(other.name) && Arrays.equals(types, other.types);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.capedwarf.shared.reflection;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import org.jboss.capedwarf.shared.util.Utils;
+
+/**
+ * Cache method invocation, backed by MethodHandle.
+ *
+ * The handle is bound once to a generic (target, args...) shape,
+ * fixed-arity invokes call it directly, without args array or access checks.
+ *
+ * @param <T> exact return type
+ * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
+ */
+public class MethodHandleInvocation<T> extends MethodInvocation<T> {
+    private final int arity;
+    private final MethodHandle handle; // (Object target, Object... args)Object, fixed arity
+    private final MethodHandle spreader; // (Object target, Object[] args)Object
+
+    MethodHandleInvocation(Method method) {
+        this(null, method);
+    }
+
+    MethodHandleInvocation(Object target, Method method) {
+        super(target, method);
+        this.arity = method.getParameterTypes().length;
+        this.handle = toGenericHandle(method);
+        this.spreader = handle.asSpreader(Object[].class, arity);
+    }
+
+    static MethodHandle toGenericHandle(Method method) {
+        try {
+            MethodHandle mh = MethodHandles.lookup().unreflect(method);
+            if (Modifier.isStatic(method.getModifiers())) {
+                mh = MethodHandles.dropArguments(mh, 0, Object.class);
+            }
+            return mh.asType(MethodType.genericMethodType(method.getParameterTypes().length + 1));
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public T invokeWithTarget(final Object target, final Object... args) {
+        final Object[] array = (args != null) ? args : EMPTY_ARGS;
+        try {
+            return (T) spreader.invokeExact(target, array);
+        } catch (Throwable t) {
+            throw Utils.toRuntimeException(t);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public T invokeWithTarget(final Object target) {
+        if (arity != 0) {
+            return invokeWithTarget(target, EMPTY_ARGS);
+        }
+        try {
+            return (T) handle.invokeExact(target);
+        } catch (Throwable t) {
+            throw Utils.toRuntimeException(t);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public T invokeWithTarget(final Object target, final Object arg) {
+        if (arity != 1) {
+            return invokeWithTarget(target, new Object[]{arg});
+        }
+        try {
+            return (T) handle.invokeExact(target, arg);
+        } catch (Throwable t) {
+            throw Utils.toRuntimeException(t);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public T invokeWithTarget(final Object target, final Object arg1, final Object arg2) {
+        if (arity != 2) {
+            return invokeWithTarget(target, new Object[]{arg1, arg2});
+        }
+        try {
+            return (T) handle.invokeExact(target, arg1, arg2);
+        } catch (Throwable t) {
+            throw Utils.toRuntimeException(t);
+        }
+    }
+}
@@ -34,6 +34,8 @@ import org.jboss.capedwarf.shared.util.Utils;
  * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
  */
 public class MethodInvocation<T> {
+    static final Object[] EMPTY_ARGS = new Object[0];
+
     private Object target;
     private final Method method;
 
@@ -50,10 +52,38 @@ public class MethodInvocation<T> {
         this.target = target;
     }
 
+    Method getMethod() {
+        return method;
+    }
+
     public T invoke(final Object... args) {
         return invokeWithTarget(target, args);
     }
 
+    public T invoke() {
+        return invokeWithTarget(target);
+    }
+
+    public T invoke(final Object arg) {
+        return invokeWithTarget(target, arg);
+    }
+
+    public T invoke(final Object arg1, final Object arg2) {
+        return invokeWithTarget(target, arg1, arg2);
+    }
+
+    public T invokeWithTarget(final Object target) {
+        return invokeWithTarget(target, EMPTY_ARGS);
+    }
+
+    public T invokeWithTarget(final Object target, final Object arg) {
+        return invokeWithTarget(target, new Object[]{arg});
+    }
+
+    public T invokeWithTarget(final Object target, final Object arg1, final Object arg2) {
+        return invokeWithTarget(target, new Object[]{arg1, arg2});
+    }
+
     @SuppressWarnings("unchecked")
     public T invokeWithTarget(final Object target, final Object... args) {
         try {
@@ -0,0 +1,160 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.capedwarf.shared.reflection;
+
+import java.lang.reflect.Method;
+
+/**
+ * MethodHandle based variant of ReflectionUtils' cache* methods.
+ * Same lookup rules, but the returned invocations skip Method / Field reflection on each call.
+ *
+ * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
+ */
+public final class ReflectionHandles {
+    private static final Class[] EMPTY_CLASSES = new Class[0];
+    private static final Object[] EMPTY_ARGS = new Object[0];
+
+    private ReflectionHandles() {
+    }
+
+    /**
+     * Cache invocation.
+     *
+     * @param clazz      the class
+     * @param methodName the method name
+     * @return cached target invocation
+     */
+    public static <T> TargetInvocation<T> cacheInvocation(Class<?> clazz, String methodName) {
+        return cacheInvocation(clazz, methodName, EMPTY_CLASSES, EMPTY_ARGS);
+    }
+
+    /**
+     * Cache invocation.
+     *
+     * @param clazz      the class
+     * @param methodName the method name
+     * @param types      the types
+     * @param args       the args
+     * @return cached target invocation
+     */
+    public static <T> TargetInvocation<T> cacheInvocation(Class<?> clazz, String methodName, Class[] types, Object[] args) {
+        final Method m = ReflectionUtils.findMethod(clazz, methodName, types);
+        return new TargetHandleInvocation<>(m, args);
+    }
+
+    /**
+     * Cache method.
+     *
+     * @param target     the target
+     * @param methodName the method name
+     * @return cached target invocation
+     */
+    public static <T> MethodInvocation<T> cacheTargetMethod(Object target, String methodName) {
+        return cacheTargetMethod(target, methodName, EMPTY_CLASSES);
+    }
+
+    /**
+     * Cache method.
+     *
+     * @param target     the target
+     * @param methodName the method name
+     * @param types      the types
+     * @return cached target invocation
+     */
+    public static <T> MethodInvocation<T> cacheTargetMethod(Object target, String methodName, Class... types) {
+        if (target == null)
+            throw new IllegalArgumentException("Null target");
+
+        final Method m = ReflectionUtils.findMethod(target.getClass(), methodName, types);
+        return new MethodHandleInvocation<>(target, m);
+    }
+
+    /**
+     * Cache method.
+     *
+     * @param clazz      the class
+     * @param methodName the method name
+     * @return cached target invocation
+     */
+    public static <T> MethodInvocation<T> cacheMethod(Class<?> clazz, String methodName) {
+        return cacheMethod(clazz, methodName, EMPTY_CLASSES);
+    }
+
+    /**
+     * Cache method.
+     *
+     * @param clazz      the class
+     * @param methodName the method name
+     * @param types      the types
+     * @return cached target invocation
+     */
+    public static <T> MethodInvocation<T> cacheMethod(Class<?> clazz, String methodName, Class... types) {
+        if (clazz == null)
+            throw new IllegalArgumentException("Null class");
+
+        final Method m = ReflectionUtils.findMethod(clazz, methodName, types);
+        return new MethodHandleInvocation<>(m);
+    }
+
+    /**
+     * Optional method.
+     *
+     * @param clazz      the class
+     * @param methodName the method name
+     * @param types      the types
+     * @return optional target invocation
+     */
+    public static <T> MethodInvocation<T> optionalMethod(Class<?> clazz, String methodName, Class... types) {
+        if (clazz == null)
+            throw new IllegalArgumentException("Null class");
+
+        try {
+            Method m = ReflectionUtils.findMethod(clazz, methodName, types);
+            return new MethodHandleInvocation<>(m);
+        } catch (IllegalStateException ignored) {
+            return new NoopMethodInvocation<>();
+        }
+    }
+
+    /**
+     * Cache field invocation.
+     *
+     * @param clazz     the class
+     * @param fieldName the field name
+     * @return field invocation
+     */
+    public static <T> FieldInvocation<T> cacheField(Class<?> clazz, String fieldName) {
+        return new FieldHandleInvocation<>(ReflectionUtils.findField(clazz, fieldName));
+    }
+
+    /**
+     * Cache field invocation.
+     *
+     * @param classname the classname
+     * @param fieldName the field name
+     * @return field invocation
+     */
+    public static <T> FieldInvocation<T> cacheField(String classname, String fieldName) {
+        return new FieldHandleInvocation<>(ReflectionUtils.findField(ReflectionUtils.loadClass(classname), fieldName));
+    }
+}
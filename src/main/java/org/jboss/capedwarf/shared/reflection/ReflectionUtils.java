@@ -39,6 +39,9 @@ public final class ReflectionUtils {
     private static final Class[] EMPTY_CLASSES = new Class[0];
     private static final Object[] EMPTY_ARGS = new Object[0];
 
+    private static final MemberCache methods = new MemberCache();
+    private static final MemberCache fields = new MemberCache();
+
     /**
      * Load class.
      *
@@ -385,6 +388,17 @@ public final class ReflectionUtils {
         return new FieldInvocation<>(findField(loadClass(classname), fieldName));
     }
 
+    /**
+     * Release cached members of classes loaded by this classloader.
+     * Must be called on app undeploy.
+     *
+     * @param cl the classloader
+     */
+    public static void releaseCache(ClassLoader cl) {
+        methods.release(cl);
+        fields.release(cl);
+    }
+
     /**
      * Try loading the class.
      *
@@ -429,18 +443,26 @@ public final class ReflectionUtils {
      * @param types      the types
      * @return method's return value
      */
-    private static Method findMethod(Class<?> clazz, String methodName, Class[] types) {
+    static Method findMethod(Class<?> clazz, String methodName, Class[] types) {
         if (clazz == null)
             throw new IllegalArgumentException("Null class");
         if (methodName == null)
             throw new IllegalArgumentException("Null method name");
 
+        final Object cached = methods.get(clazz, methodName, types);
+        if (cached == MemberCache.NOT_FOUND) {
+            throw new IllegalStateException("Couldn't find method: " + clazz.getName() + " / " + methodName);
+        } else if (cached != null) {
+            return (Method) cached;
+        }
+
         try {
             Class<?> current = clazz;
             while (current != null) {
                 try {
                     final Method m = current.getDeclaredMethod(methodName, types);
                     m.setAccessible(true);
+                    methods.put(clazz, methodName, types, m);
                     return m;
                 } catch (NoSuchMethodException ignored) {
                 }
@@ -449,6 +471,7 @@ public final class ReflectionUtils {
         } catch (Throwable t) {
             throw Utils.toRuntimeException(t);
         }
+        methods.put(clazz, methodName, types, MemberCache.NOT_FOUND);
         throw new IllegalStateException("Couldn't find method: " + clazz.getName() + " / " + methodName);
     }
 
@@ -459,18 +482,26 @@ public final class ReflectionUtils {
      * @param fieldName the field name
      * @return field instance
      */
-    private static Field findField(Class<?> clazz, String fieldName) {
+    static Field findField(Class<?> clazz, String fieldName) {
         if (clazz == null)
             throw new IllegalArgumentException("Null class");
         if (fieldName == null)
             throw new IllegalArgumentException("Null field name");
 
+        final Object cached = fields.get(clazz, fieldName, null);
+        if (cached == MemberCache.NOT_FOUND) {
+            throw new IllegalStateException("Couldn't find field: " + clazz.getName() + " / " + fieldName);
+        } else if (cached != null) {
+            return (Field) cached;
+        }
+
         try {
             Class<?> current = clazz;
             while (current != null) {
                 try {
                     final Field f = current.getDeclaredField(fieldName);
                     f.setAccessible(true);
+                    fields.put(clazz, fieldName, null, f);
                     return f;
                 } catch (NoSuchFieldException ignored) {
                 }
@@ -479,6 +510,7 @@ public final class ReflectionUtils {
         } catch (Throwable t) {
             throw Utils.toRuntimeException(t);
         }
+        fields.put(clazz, fieldName, null, MemberCache.NOT_FOUND);
         throw new IllegalStateException("Couldn't find field: " + clazz.getName() + " / " + fieldName);
     }
 }
@@ -0,0 +1,112 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.capedwarf.shared.reflection;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.WrongMethodTypeException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Cache target invocation, backed by MethodHandle.
+ *
+ * Arguments are checked up front, as Method::invoke does: a wrong type, or a null for a primitive,
+ * is an IllegalArgumentException, not a handle conversion failure wrapped as the target's exception.
+ *
+ * @param <T> exact return type
+ * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
+ */
+public class TargetHandleInvocation<T> extends TargetInvocation<T> {
+    private static final Map<Class<?>, Class<?>> PRIMITIVES = new HashMap<>();
+
+    static {
+        PRIMITIVES.put(Boolean.class, Boolean.TYPE);
+        PRIMITIVES.put(Byte.class, Byte.TYPE);
+        PRIMITIVES.put(Character.class, Character.TYPE);
+        PRIMITIVES.put(Short.class, Short.TYPE);
+        PRIMITIVES.put(Integer.class, Integer.TYPE);
+        PRIMITIVES.put(Long.class, Long.TYPE);
+        PRIMITIVES.put(Float.class, Float.TYPE);
+        PRIMITIVES.put(Double.class, Double.TYPE);
+    }
+
+    private final Class<?>[] parameterTypes;
+    private final int arity;
+    private final MethodHandle spreader; // (Object target, Object[] args)Object
+
+    TargetHandleInvocation(Method method, Object[] args) {
+        super(method, args);
+        parameterTypes = method.getParameterTypes();
+        arity = parameterTypes.length;
+        spreader = MethodHandleInvocation.toGenericHandle(method).asSpreader(Object[].class, arity);
+    }
+
+    private static boolean isAssignable(Class<?> type, Object arg) {
+        if (type.isPrimitive() == false) {
+            return (arg == null || type.isInstance(arg));
+        }
+        final Class<?> primitive = (arg != null) ? PRIMITIVES.get(arg.getClass()) : null;
+        return (primitive != null && (primitive == type || isWidening(primitive, type)));
+    }
+
+    /**
+     * JLS 5.1.2, widening primitive conversions.
+     */
+    private static boolean isWidening(Class<?> from, Class<?> to) {
+        if (from == Byte.TYPE) {
+            return (to == Short.TYPE || to == Integer.TYPE || to == Long.TYPE || to == Float.TYPE || to == Double.TYPE);
+        } else if (from == Short.TYPE || from == Character.TYPE) {
+            return (to == Integer.TYPE || to == Long.TYPE || to == Float.TYPE || to == Double.TYPE);
+        } else if (from == Integer.TYPE) {
+            return (to == Long.TYPE || to == Float.TYPE || to == Double.TYPE);
+        } else if (from == Long.TYPE) {
+            return (to == Float.TYPE || to == Double.TYPE);
+        } else if (from == Float.TYPE) {
+            return (to == Double.TYPE);
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected T invokeInternal(final Object target, final Object[] args) throws Exception {
+        final Object[] array = (args != null) ? args : MethodInvocation.EMPTY_ARGS;
+        if (array.length != arity) {
+            throw new IllegalArgumentException("Wrong number of arguments: " + array.length + ", expected " + arity);
+        }
+        for (int i = 0; i < arity; i++) {
+            if (isAssignable(parameterTypes[i], array[i]) == false) {
+                throw new IllegalArgumentException("Argument " + i + " (" + array[i] + ") is not assignable to " + parameterTypes[i].getName());
+            }
+        }
+        try {
+            return (T) spreader.invokeExact(target, array);
+        } catch (WrongMethodTypeException e) {
+            throw new IllegalArgumentException(e);
+        } catch (Throwable t) {
+            // same contract as Method::invoke
+            throw new InvocationTargetException(t);
+        }
+    }
+}
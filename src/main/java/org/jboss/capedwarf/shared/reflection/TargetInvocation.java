@@ -47,13 +47,17 @@ public class TargetInvocation<T> {
         return this;
     }
 
-    @SuppressWarnings("unchecked")
     public T invoke(final Object target) throws Exception {
         final Class<?> clazz = method.getDeclaringClass();
         if (clazz.isInstance(target) == false) {
             throw new IllegalArgumentException("Target " + target + " is not assignable to " + clazz);
         }
 
+        return invokeInternal(target, args);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected T invokeInternal(final Object target, final Object[] args) throws Exception {
         return (T) method.invoke(target, args);
     }
 
@@ -30,9 +30,9 @@ import javax.servlet.http.Part;
  */
 public abstract class AbstractHttpServletRequest extends AbstractServletRequest implements HttpServletRequest {
     private String method;
-    private List<Cookie> cookies = new ArrayList<>();
-    private Map<String, Set<String>> headers = new HashMap<>();
-    private Map<String, Part> parts = new HashMap<>();
+    private List<Cookie> cookies;
+    private final CompactMultiMap headers = new CompactMultiMap(true);
+    private Map<String, Part> parts;
     private HttpSession session;
     // paths
     private String path;
@@ -40,12 +40,36 @@ public abstract class AbstractHttpServletRequest extends AbstractServletRequest
     private String pathInfo;
     private String queryString;
     // security
-    private Set<String> roles = new HashSet<>();
+    private Set<String> roles;
 
     protected AbstractHttpServletRequest(ServletContext context) {
         super(context);
     }
 
+    /**
+     * Subclasses must override and call super too, see AbstractServletRequest#reset.
+     */
+    @Override
+    public void reset() {
+        super.reset();
+        method = null;
+        if (cookies != null) {
+            cookies.clear();
+        }
+        headers.clear();
+        if (parts != null) {
+            parts.clear();
+        }
+        session = null;
+        path = null;
+        servletPath = null;
+        pathInfo = null;
+        queryString = null;
+        if (roles != null) {
+            roles.clear();
+        }
+    }
+
     public void setPath(String path) {
         this.path = path;
     }
@@ -63,42 +87,37 @@ public abstract class AbstractHttpServletRequest extends AbstractServletRequest
     }
 
     public void addCookie(Cookie cookie) {
+        if (cookies == null) {
+            cookies = new ArrayList<>();
+        }
         cookies.add(cookie);
     }
 
     protected void addRole(String role) {
+        if (roles == null) {
+            roles = new HashSet<>();
+        }
         roles.add(role);
     }
 
     public void addHeader(String name, String value) {
-        name = normalizeHeaderName(name);
-        Set<String> set = headers.get(name);
-        if (set == null) {
-            set = new HashSet<>();
-            headers.put(name, set);
-        }
-        set.add(value);
+        headers.add(name, value);
     }
 
     public void addHeaders(String name, String[] values) {
-        name = normalizeHeaderName(name);
-        Set<String> set = headers.get(name);
-        if (set == null) {
-            set = new HashSet<>();
-            headers.put(name, set);
-        }
-        set.addAll(Arrays.asList(values));
+        headers.addAll(name, Arrays.asList(values));
     }
 
     public void addHeaders(Map<String, Set<String>> map) {
         for (Map.Entry<String, Set<String>> entry : map.entrySet()) {
-            String name = normalizeHeaderName(entry.getKey());
-            Set<String> values = entry.getValue();
-            addHeaders(name, values.toArray(new String[values.size()]));
+            headers.addAll(entry.getKey(), entry.getValue());
         }
     }
 
     public void addPart(String name, Part part) {
+        if (parts == null) {
+            parts = new HashMap<>();
+        }
         parts.put(name, part);
     }
 
@@ -107,7 +126,7 @@ public abstract class AbstractHttpServletRequest extends AbstractServletRequest
     }
 
     public Cookie[] getCookies() {
-        return cookies.toArray(new Cookie[cookies.size()]);
+        return (cookies != null) ? cookies.toArray(new Cookie[cookies.size()]) : new Cookie[0];
     }
 
     public long getDateHeader(String name) {
@@ -116,21 +135,15 @@ public abstract class AbstractHttpServletRequest extends AbstractServletRequest
     }
 
     public String getHeader(String name) {
-        final Set<String> h = headers.get(normalizeHeaderName(name));
-        return (h != null && h.isEmpty() == false) ? h.iterator().next() : null;
+        return headers.getFirst(name);
     }
 
     public Enumeration<String> getHeaders(String name) {
-        final Set<String> h = headers.get(normalizeHeaderName(name));
-        return (h != null && h.isEmpty() == false) ? Collections.enumeration(h) : Collections.enumeration(Collections.<String>emptySet());
-    }
-
-    private String normalizeHeaderName(String name) {
-        return name.toLowerCase();
+        return headers.getValues(name);
     }
 
     public Enumeration<String> getHeaderNames() {
-        return Collections.enumeration(headers.keySet());
+        return headers.getNames();
     }
 
     public int getIntHeader(String name) {
@@ -167,7 +180,7 @@ public abstract class AbstractHttpServletRequest extends AbstractServletRequest
     }
 
     public boolean isUserInRole(String role) {
-        return roles.contains(role);
+        return (roles != null && roles.contains(role));
     }
 
     public Principal getUserPrincipal() {
@@ -230,16 +243,18 @@ public abstract class AbstractHttpServletRequest extends AbstractServletRequest
     }
 
     public void logout() throws ServletException {
-        roles.clear();
+        if (roles != null) {
+            roles.clear();
+        }
         // TODO
     }
 
     public Collection<Part> getParts() throws IOException, ServletException {
-        return parts.values();
+        return (parts != null) ? parts.values() : Collections.<Part>emptyList();
     }
 
     public Part getPart(String name) throws IOException, ServletException {
-        return parts.get(name);
+        return (parts != null) ? parts.get(name) : null;
     }
 
     public String changeSessionId() {
@@ -250,12 +265,9 @@ public abstract class AbstractHttpServletRequest extends AbstractServletRequest
         return null;
     }
 
-    public long getContentLengthLong() {
-        return (long) getContentLength();
-    }
-
     @Override
     public String getContentType() {
-        return getHeader("content-type");
+        final String contentType = getHeader("content-type");
+        return (contentType != null) ? contentType : super.getContentType();
     }
 }
@@ -9,6 +9,8 @@ import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 import java.util.Collections;
 import java.util.Enumeration;
@@ -23,10 +25,18 @@ import java.util.Set;
  * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
  */
 public abstract class AbstractServletRequest implements ServletRequest, Mock {
+    private static final String DEFAULT_ENCODING = "UTF-8";
+
     private ServletContext context;
-    private Map<String, Set<String>> parameters = new HashMap<>();
-    private Map<String, Object> attributes = new HashMap<>();
-    private String charEncoding = "UTF-8";
+    private final CompactMultiMap parameters = new CompactMultiMap();
+    private Map<String, Object> attributes;
+    private String charEncoding = DEFAULT_ENCODING;
+    // body
+    private InputStream body;
+    private long contentLength = -1;
+    private String contentType;
+    private ServletInputStream inputStream;
+    private BufferedReader reader;
 
     protected AbstractServletRequest(ServletContext context) {
         if (context == null)
@@ -34,20 +44,59 @@ public abstract class AbstractServletRequest implements ServletRequest, Mock {
         this.context = context;
     }
 
+    /**
+     * Reset the request to its initial state, so it can be reused.
+     * The servlet context is kept.
+     *
+     * Subclasses with state of their own must override this, clear that state and call super;
+     * otherwise a pooled request leaks one task's data into the next, see AbstractServletRequestCreator.
+     */
+    public void reset() {
+        parameters.clear();
+        if (attributes != null) {
+            attributes.clear();
+        }
+        charEncoding = DEFAULT_ENCODING;
+        body = null;
+        contentLength = -1;
+        contentType = null;
+        inputStream = null;
+        reader = null;
+    }
+
+    /**
+     * Set request body, read as is, e.g. straight from the message.
+     *
+     * @param body the body stream
+     * @param contentLength the length, -1 if unknown
+     */
+    public void setBody(InputStream body, long contentLength) {
+        this.body = body;
+        this.contentLength = contentLength;
+        this.inputStream = null;
+        this.reader = null;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+
     public void setParameters(String key, Set<String> values) {
-        parameters.put(key, values);
+        parameters.set(key, values);
     }
 
     public void addParameters(Map<String, Set<String>> map) {
-        parameters.putAll(map);
+        for (Map.Entry<String, Set<String>> entry : map.entrySet()) {
+            parameters.set(entry.getKey(), entry.getValue());
+        }
     }
 
     public Object getAttribute(String name) {
-        return attributes.get(name);
+        return (attributes != null) ? attributes.get(name) : null;
     }
 
     public Enumeration<String> getAttributeNames() {
-        return Collections.enumeration(attributes.keySet());
+        return (attributes != null) ? Collections.enumeration(attributes.keySet()) : Collections.<String>emptyEnumeration();
     }
 
     public String getCharacterEncoding() {
@@ -59,37 +108,41 @@ public abstract class AbstractServletRequest implements ServletRequest, Mock {
     }
 
     public int getContentLength() {
-        return -1;
+        return (contentLength <= Integer.MAX_VALUE) ? (int) contentLength : -1;
+    }
+
+    public long getContentLengthLong() {
+        return contentLength;
     }
 
     public String getContentType() {
-        return null; // TODO
+        return contentType;
     }
 
     public ServletInputStream getInputStream() throws IOException {
-        return NoopServletInputStream.INSTANCE;
+        if (reader != null) {
+            throw new IllegalStateException("getReader() already called.");
+        }
+        if (inputStream == null) {
+            inputStream = (body != null) ? new DelegatingServletInputStream(body) : NoopServletInputStream.INSTANCE;
+        }
+        return inputStream;
     }
 
     public String getParameter(String name) {
-        final Set<String> strings = parameters.get(name);
-        return strings != null && strings.size() > 0 ? strings.iterator().next() : null;
+        return parameters.getFirst(name);
     }
 
     public Enumeration<String> getParameterNames() {
-        return Collections.enumeration(parameters.keySet());
+        return parameters.getNames();
     }
 
     public String[] getParameterValues(String name) {
-        Set<String> set = parameters.get(name);
-        return (set != null) ? set.toArray(new String[set.size()]) : null;
+        return parameters.getAll(name);
     }
 
     public Map<String, String[]> getParameterMap() {
-        final Map<String, String[]> map = new HashMap<>();
-        for (Map.Entry<String, Set<String>> entry : parameters.entrySet()) {
-            map.put(entry.getKey(), entry.getValue().toArray(new String[entry.getValue().size()]));
-        }
-        return map;
+        return parameters.toMap();
     }
 
     public String getProtocol() {
@@ -109,7 +162,14 @@ public abstract class AbstractServletRequest implements ServletRequest, Mock {
     }
 
     public BufferedReader getReader() throws IOException {
-        return null;  // TODO
+        if (reader == null) {
+            if (inputStream != null) {
+                throw new IllegalStateException("getInputStream() already called.");
+            }
+            final InputStream stream = (body != null) ? body : NoopServletInputStream.INSTANCE;
+            reader = new BufferedReader(new InputStreamReader(stream, charEncoding));
+        }
+        return reader;
     }
 
     public String getRemoteAddr() {
@@ -121,11 +181,16 @@ public abstract class AbstractServletRequest implements ServletRequest, Mock {
     }
 
     public void setAttribute(String name, Object o) {
+        if (attributes == null) {
+            attributes = new HashMap<>();
+        }
         attributes.put(name, o);
     }
 
     public void removeAttribute(String name) {
-        attributes.remove(name);
+        if (attributes != null) {
+            attributes.remove(name);
+        }
     }
 
     public Locale getLocale() {
@@ -24,6 +24,7 @@ package org.jboss.capedwarf.shared.servlet;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.servlet.ServletContext;
 import javax.servlet.ServletRequest;
@@ -31,7 +32,9 @@ import javax.servlet.ServletRequest;
 import org.infinispan.manager.EmbeddedCacheManager;
 import org.jboss.capedwarf.shared.components.ComponentRegistry;
 import org.jboss.capedwarf.shared.components.Key;
+import org.jboss.capedwarf.shared.components.ResolvedKey;
 import org.jboss.capedwarf.shared.components.SimpleKey;
+import org.jboss.capedwarf.shared.reflection.ReflectionUtils;
 import org.jboss.capedwarf.shared.util.Utils;
 
 /**
@@ -82,6 +85,7 @@ public final class CapedwarfApiProxy {
 
     public static void destroy(final ClassLoader cl) {
         classLoaders.remove(cl);
+        ReflectionUtils.releaseCache(cl);
     }
 
     static void destroy(final String appId, final String module, final ServletContext context) {
@@ -99,6 +103,7 @@ public final class CapedwarfApiProxy {
     public static class Info {
         private String appId;
         private String module;
+        private final ConcurrentMap<Class<?>, Key<?>> keys = new ConcurrentHashMap<>();
 
         private Info(String appId, String module) {
             this.appId = appId;
@@ -112,5 +117,24 @@ public final class CapedwarfApiProxy {
         public String getModule() {
             return module;
         }
+
+        /**
+         * Get interned component key for this app / module.
+         *
+         * @param type the component type
+         * @return resolved key
+         */
+        @SuppressWarnings("unchecked")
+        public <T> Key<T> getKey(Class<T> type) {
+            Key<T> key = (Key<T>) keys.get(type);
+            if (key == null) {
+                key = new ResolvedKey<>(appId, module, type);
+                Key<T> previous = (Key<T>) keys.putIfAbsent(type, key);
+                if (previous != null) {
+                    key = previous;
+                }
+            }
+            return key;
+        }
     }
 }
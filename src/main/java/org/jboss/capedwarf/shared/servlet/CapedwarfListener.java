@@ -31,10 +31,11 @@ import javax.servlet.ServletRequestEvent;
 import javax.servlet.ServletRequestListener;
 
 import org.infinispan.manager.EmbeddedCacheManager;
+import org.jboss.capedwarf.shared.jms.ServletPathMatcher;
 
 /**
  * Capedwarf listener.
- * * registers servlet context -- tasks API
+ * * registers servlet context and its servlet path matcher -- tasks API
  * * holds classloaders -- so we know which apps are CD apps from TCCL
  *
  * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
@@ -48,6 +49,7 @@ public class CapedwarfListener implements ServletContextListener, ServletRequest
         final String module = (String) context.getAttribute("org.jboss.capedwarf.module");
 
         CapedwarfApiProxy.initialize(appId, module, context);
+        ServletPathMatcher.initialize(appId, module, context);
     }
 
     public void contextDestroyed(ServletContextEvent sce) {
@@ -55,6 +57,7 @@ public class CapedwarfListener implements ServletContextListener, ServletRequest
         final String appId = (String) context.getAttribute("org.jboss.capedwarf.appId");
         final String module = (String) context.getAttribute("org.jboss.capedwarf.module");
 
+        ServletPathMatcher.destroy(appId, module);
         CapedwarfApiProxy.destroy(appId, module, context);
     }
 
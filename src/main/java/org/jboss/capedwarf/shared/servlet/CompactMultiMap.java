@@ -0,0 +1,228 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.capedwarf.shared.servlet;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Array backed, insertion ordered name to values map.
+ *
+ * Mock requests hold a handful of parameters and headers,
+ * so a linear scan over parallel arrays, guarded by a cached name hash, beats a hash table,
+ * and #clear keeps the arrays around for the next pooled use.
+ * Values of a name are distinct, as with the previous Set based storage.
+ *
+ * Names can be case insensitive (headers); the first seen spelling is kept,
+ * and lookups neither lower-case nor copy the name.
+ *
+ * Not thread safe.
+ *
+ * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
+ */
+final class CompactMultiMap {
+    private static final int INITIAL = 8;
+    private static final String[] NO_VALUES = new String[0];
+
+    private final boolean ignoreCase;
+
+    private String[] names;
+    private int[] hashes;
+    private String[][] values;
+    private int[] counts;
+    private int size;
+
+    CompactMultiMap() {
+        this(false);
+    }
+
+    CompactMultiMap(boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int hash(String name) {
+        if (ignoreCase == false) {
+            return name.hashCode();
+        }
+        int h = 0;
+        for (int i = 0; i < name.length(); i++) {
+            h = 31 * h + Character.toLowerCase(Character.toUpperCase(name.charAt(i)));
+        }
+        return h;
+    }
+
+    private int indexOf(String name, int hash) {
+        for (int i = 0; i < size; i++) {
+            if (hashes[i] == hash && (ignoreCase ? names[i].equalsIgnoreCase(name) : names[i].equals(name))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int indexOf(String name) {
+        return (size > 0) ? indexOf(name, hash(name)) : -1;
+    }
+
+    private int getOrAdd(String name) {
+        final int hash = hash(name);
+        int index = indexOf(name, hash);
+        if (index < 0) {
+            if (names == null) {
+                names = new String[INITIAL];
+                hashes = new int[INITIAL];
+                values = new String[INITIAL][];
+                counts = new int[INITIAL];
+            } else if (size == names.length) {
+                names = Arrays.copyOf(names, size << 1);
+                hashes = Arrays.copyOf(hashes, size << 1);
+                values = Arrays.copyOf(values, size << 1);
+                counts = Arrays.copyOf(counts, size << 1);
+            }
+            index = size++;
+            names[index] = name;
+            hashes[index] = hash;
+            counts[index] = 0;
+            if (values[index] == null) {
+                values[index] = new String[2];
+            }
+        }
+        return index;
+    }
+
+    private void addValue(int index, String value) {
+        String[] array = values[index];
+        final int count = counts[index];
+        for (int i = 0; i < count; i++) {
+            if (array[i] == null ? value == null : array[i].equals(value)) {
+                return;
+            }
+        }
+        if (count == array.length) {
+            array = values[index] = Arrays.copyOf(array, count << 1);
+        }
+        array[count] = value;
+        counts[index] = count + 1;
+    }
+
+    void add(String name, String value) {
+        addValue(getOrAdd(name), value);
+    }
+
+    void addAll(String name, Collection<String> collection) {
+        final int index = getOrAdd(name);
+        for (String value : collection) {
+            addValue(index, value);
+        }
+    }
+
+    void set(String name, Collection<String> collection) {
+        final int index = getOrAdd(name);
+        Arrays.fill(values[index], 0, counts[index], null);
+        counts[index] = 0;
+        for (String value : collection) {
+            addValue(index, value);
+        }
+    }
+
+    String getFirst(String name) {
+        final int index = indexOf(name);
+        return (index >= 0 && counts[index] > 0) ? values[index][0] : null;
+    }
+
+    /**
+     * @return copy of the values, or null if no such name
+     */
+    String[] getAll(String name) {
+        final int index = indexOf(name);
+        return (index >= 0) ? valuesAt(index) : null;
+    }
+
+    private String[] valuesAt(int index) {
+        final int count = counts[index];
+        return (count > 0) ? Arrays.copyOf(values[index], count) : NO_VALUES;
+    }
+
+    Enumeration<String> getNames() {
+        return new ArrayEnumeration(names, size);
+    }
+
+    Enumeration<String> getValues(String name) {
+        final int index = indexOf(name);
+        if (index < 0 || counts[index] == 0) {
+            return Collections.emptyEnumeration();
+        }
+        return new ArrayEnumeration(values[index], counts[index]);
+    }
+
+    Map<String, String[]> toMap() {
+        final Map<String, String[]> map = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            map.put(names[i], valuesAt(i));
+        }
+        return map;
+    }
+
+    /**
+     * Drop all entries, but keep the storage.
+     */
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            names[i] = null;
+            Arrays.fill(values[i], 0, counts[i], null);
+            counts[i] = 0;
+        }
+        size = 0;
+    }
+
+    private static final class ArrayEnumeration implements Enumeration<String> {
+        private final String[] array;
+        private final int length;
+        private int index;
+
+        private ArrayEnumeration(String[] array, int length) {
+            this.array = array;
+            this.length = length;
+        }
+
+        public boolean hasMoreElements() {
+            return index < length;
+        }
+
+        public String nextElement() {
+            if (index >= length) {
+                throw new NoSuchElementException();
+            }
+            return array[index++];
+        }
+    }
+}
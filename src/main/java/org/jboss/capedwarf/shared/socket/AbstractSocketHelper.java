@@ -23,116 +23,79 @@
 package org.jboss.capedwarf.shared.socket;
 
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Method;
 import java.net.SocketException;
-import java.net.SocketOptions;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 import org.jboss.capedwarf.shared.compatibility.Compatibility;
+import org.jboss.capedwarf.shared.components.SimpleKey;
 
 /**
+ * Delegate dispatch is done through MethodHandles, bound once per SocketImpl / DatagramSocketImpl method;
+ * invoked with exact types, so no args arrays nor boxing.
+ *
  * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
  */
 abstract class AbstractSocketHelper {
-    private static final Class[] EMPTY_CLASS_ARRAY = new Class[0];
-    private static final Object[] EMPTY_OBJECT_ARRAY = new Object[0];
-
-    private final Map<String, Method> methods = new ConcurrentHashMap<>();
-
-    protected <T> T invokeQuiet(Object target, String method) {
+    static MethodHandle findHandle(Class<?> clazz, String method, Class<?>... types) {
         try {
-            return invoke(target, method);
-        } catch (IOException e) {
+            Method m = clazz.getDeclaredMethod(method, types);
+            m.setAccessible(true);
+            return MethodHandles.lookup().unreflect(m);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
             throw new IllegalStateException(e);
         }
     }
 
-    protected <T> T invokeCheck(Object target, String method) throws SocketException {
-        try {
-            return invoke(target, method);
-        } catch (SocketException e) {
-            throw e;
-        } catch (IOException e) {
-            throw new SocketException(e.getMessage());
-        }
-    }
-
-    protected <T> T invoke(Object target, String method) throws IOException {
-        return invoke(target, method, EMPTY_CLASS_ARRAY, EMPTY_OBJECT_ARRAY);
-    }
-
-    protected <T> T invoke(Object target, String method, Class[] types, Object[] args) throws IOException {
-        return invoke(target, method, method, types, args);
-    }
-
-    protected <T> T invokeCheck(Object target, String method, Class[] types, Object[] args) throws SocketException {
-        try {
-            return invoke(target, method, types, args);
-        } catch (SocketException e) {
-            throw e;
-        } catch (IOException e) {
-            throw new SocketException(e.getMessage());
+    static IOException toIOException(Throwable t) {
+        if (t instanceof IOException) {
+            return IOException.class.cast(t);
+        } else if (t instanceof RuntimeException) {
+            throw RuntimeException.class.cast(t);
+        } else if (t instanceof Error) {
+            throw Error.class.cast(t);
+        } else {
+            throw new IllegalStateException(t);
         }
     }
 
-    protected <T> T invoke(Object target, Class<?> clazz, String method, Class[] types, Object[] args) throws IOException {
-        return invoke(target, clazz, method, method, types, args);
+    static SocketException toSocketException(Throwable t) {
+        IOException e = toIOException(t);
+        return (e instanceof SocketException) ? SocketException.class.cast(e) : new SocketException(e.getMessage());
     }
 
-    protected abstract <T> T invoke(Object target, String key, String method, Class[] types, Object[] args) throws IOException;
-
-    protected <T> T invoke(Object target, Class<?> clazz, String key, String method, Class[] types, Object[] args) throws IOException {
-        try {
-            Method m = methods.get(key);
-            if (m == null) {
-                m = clazz.getDeclaredMethod(method, types);
-                m.setAccessible(true);
-                methods.put(key, m);
-            }
-            //noinspection unchecked
-            return (T) m.invoke(target, args);
-        } catch (NoSuchMethodException | IllegalAccessException e) {
-            throw new IllegalStateException(e);
-        } catch (InvocationTargetException e) {
-            Throwable t = e.getTargetException();
-            if (t instanceof IOException) {
-                throw IOException.class.cast(t);
-            } else {
-                throw new IllegalStateException(t);
-            }
-        }
+    static RuntimeException toRuntimeException(Throwable t) {
+        return new IllegalStateException(toIOException(t));
     }
 
     // --- SocketOptions
 
     void setOption(SocketOptionsInternal socketImpl, int optID, Object value) throws SocketException {
-        final Compatibility compatibility = Compatibility.getInstance();
+        final Compatibility compatibility = Compatibility.getInstance(SimpleKey.withCurrentApp(Compatibility.class));
         if (compatibility.isEnabled(Compatibility.Feature.ENABLE_SOCKET_OPTIONS)) {
             setOptionInternal(socketImpl, optID, value);
         } else {
             CapedwarfSocketOptions.Option option = CapedwarfSocketOptions.getOptionById(optID);
-            if (option != null) {
+            if (option == null) {
+                socketImpl.getMetrics().optionRejected();
+                return;
+            }
+            try {
                 option.validateAndApply(socketImpl, value);
+            } catch (SocketException | RuntimeException e) {
+                socketImpl.getMetrics().optionRejected();
+                throw e;
             }
         }
     }
 
     void setOptionInternal(SocketOptionsInternal socketImpl, int optID, Object value) throws SocketException {
-        try {
-            invoke(socketImpl.getDelegate(), SocketOptions.class, "setOption", new Class[]{Integer.TYPE, Object.class}, new Object[]{optID, value});
-        } catch (IOException e) {
-            if (e instanceof SocketException) {
-                throw SocketException.class.cast(e);
-            } else {
-                throw new SocketException(e.getMessage());
-            }
-        }
+        socketImpl.getDelegate().setOption(optID, value);
     }
 
     Object getOption(SocketOptionsInternal socketImpl, int optID) throws SocketException {
-        final Compatibility compatibility = Compatibility.getInstance();
+        final Compatibility compatibility = Compatibility.getInstance(SimpleKey.withCurrentApp(Compatibility.class));
         if (compatibility.isEnabled(Compatibility.Feature.ENABLE_SOCKET_OPTIONS)) {
             return getOptionInternal(socketImpl, optID);
         } else {
@@ -142,14 +105,6 @@ abstract class AbstractSocketHelper {
     }
 
     Object getOptionInternal(SocketOptionsInternal socketImpl, int optID) throws SocketException {
-        try {
-            return invoke(socketImpl.getDelegate(), SocketOptions.class, "getOption", new Class[]{Integer.TYPE}, new Object[]{optID});
-        } catch (IOException e) {
-            if (e instanceof SocketException) {
-                throw SocketException.class.cast(e);
-            } else {
-                throw new SocketException(e.getMessage());
-            }
-        }
+        return socketImpl.getDelegate().getOption(optID);
     }
 }
@@ -30,6 +30,8 @@ import java.net.InetAddress;
 import java.net.NetworkInterface;
 import java.net.SocketAddress;
 import java.net.SocketException;
+import java.net.SocketOptions;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
@@ -38,87 +40,181 @@ class CapedwarfDatagramSocket extends DatagramSocketImpl implements SocketOption
     private final static AbstractSocketHelper helper = new CapedwarfDatagramSocketHelper();
 
     private final DatagramSocketImpl delegate;
+    private final SocketMetrics metrics;
+    private final AtomicBoolean open = new AtomicBoolean();
 
     CapedwarfDatagramSocket(DatagramSocketImpl delegate) {
+        this(delegate, new SocketMetrics());
+    }
+
+    CapedwarfDatagramSocket(DatagramSocketImpl delegate, SocketMetrics metrics) {
         this.delegate = delegate;
+        this.metrics = metrics;
     }
 
-    protected void connect(String host, int port) throws IOException {
-        helper.invoke(delegate, "connect", new Class[]{String.class, Integer.TYPE}, new Object[]{host, port});
+    protected void connect(InetAddress address, int port) throws SocketException {
+        final long start = System.nanoTime();
+        try {
+            CapedwarfDatagramSocketHelper.CONNECT.invokeExact(delegate, address, port);
+            metrics.connected(start);
+        } catch (Throwable t) {
+            metrics.connectFailed();
+            throw AbstractSocketHelper.toSocketException(t);
+        }
     }
 
     protected void disconnect() {
-        helper.invokeQuiet(delegate, "disconnect");
+        try {
+            CapedwarfDatagramSocketHelper.DISCONNECT.invokeExact(delegate);
+        } catch (Throwable t) {
+            throw AbstractSocketHelper.toRuntimeException(t);
+        }
     }
 
     protected int getLocalPort() {
-        return helper.invokeQuiet(delegate, "getLocalPort");
+        try {
+            return (int) CapedwarfDatagramSocketHelper.GET_LOCAL_PORT.invokeExact(delegate);
+        } catch (Throwable t) {
+            throw AbstractSocketHelper.toRuntimeException(t);
+        }
     }
 
     protected FileDescriptor getFileDescriptor() {
-        return helper.invokeQuiet(delegate, "getFileDescriptor");
+        try {
+            return (FileDescriptor) CapedwarfDatagramSocketHelper.GET_FILE_DESCRIPTOR.invokeExact(delegate);
+        } catch (Throwable t) {
+            throw AbstractSocketHelper.toRuntimeException(t);
+        }
     }
 
     // ---
 
     protected void create() throws SocketException {
-        helper.invokeCheck(delegate, "create");
+        try {
+            CapedwarfDatagramSocketHelper.CREATE.invokeExact(delegate);
+            if (open.compareAndSet(false, true)) {
+                metrics.opened();
+            }
+        } catch (Throwable t) {
+            throw AbstractSocketHelper.toSocketException(t);
+        }
     }
 
     protected void bind(int lport, InetAddress laddr) throws SocketException {
-        helper.invokeCheck(delegate, "bind", new Class[]{int.class, InetAddress.class}, new Object[]{lport, laddr});
+        try {
+            CapedwarfDatagramSocketHelper.BIND.invokeExact(delegate, lport, laddr);
+        } catch (Throwable t) {
+            throw AbstractSocketHelper.toSocketException(t);
+        }
     }
 
     protected void send(DatagramPacket p) throws IOException {
-        helper.invoke(delegate, "send", new Class[]{DatagramPacket.class}, new Object[]{p});
+        try {
+            CapedwarfDatagramSocketHelper.SEND.invokeExact(delegate, p);
+            metrics.written(p.getLength());
+        } catch (Throwable t) {
+            throw AbstractSocketHelper.toIOException(t);
+        }
     }
 
     protected int peek(InetAddress i) throws IOException {
-        return helper.invoke(delegate, "peek", new Class[]{InetAddress.class}, new Object[]{i});
+        try {
+            return (int) CapedwarfDatagramSocketHelper.PEEK.invokeExact(delegate, i);
+        } catch (Throwable t) {
+            throw AbstractSocketHelper.toIOException(t);
+        }
     }
 
     protected int peekData(DatagramPacket p) throws IOException {
-        return helper.invoke(delegate, "peekData", new Class[]{DatagramPacket.class}, new Object[]{p});
+        try {
+            return (int) CapedwarfDatagramSocketHelper.PEEK_DATA.invokeExact(delegate, p);
+        } catch (Throwable t) {
+            throw AbstractSocketHelper.toIOException(t);
+        }
     }
 
     protected void receive(DatagramPacket p) throws IOException {
-        helper.invoke(delegate, "receive", new Class[]{DatagramPacket.class}, new Object[]{p});
+        try {
+            CapedwarfDatagramSocketHelper.RECEIVE.invokeExact(delegate, p);
+            metrics.read(p.getLength());
+        } catch (Throwable t) {
+            throw AbstractSocketHelper.toIOException(t);
+        }
     }
 
     protected void setTTL(byte ttl) throws IOException {
-        helper.invoke(delegate, "setTTL", new Class[]{byte.class}, new Object[]{ttl});
+        try {
+            CapedwarfDatagramSocketHelper.SET_TTL.invokeExact(delegate, ttl);
+        } catch (Throwable t) {
+            throw AbstractSocketHelper.toIOException(t);
+        }
     }
 
     protected byte getTTL() throws IOException {
-        return helper.invoke(delegate, "getTTL");
+        try {
+            return (byte) CapedwarfDatagramSocketHelper.GET_TTL.invokeExact(delegate);
+        } catch (Throwable t) {
+            throw AbstractSocketHelper.toIOException(t);
+        }
     }
 
     protected void setTimeToLive(int ttl) throws IOException {
-        helper.invoke(delegate, "setTimeToLive", new Class[]{int.class}, new Object[]{ttl});
+        try {
+            CapedwarfDatagramSocketHelper.SET_TIME_TO_LIVE.invokeExact(delegate, ttl);
+        } catch (Throwable t) {
+            throw AbstractSocketHelper.toIOException(t);
+        }
     }
 
     protected int getTimeToLive() throws IOException {
-        return helper.invoke(delegate, "getTimeToLive");
+        try {
+            return (int) CapedwarfDatagramSocketHelper.GET_TIME_TO_LIVE.invokeExact(delegate);
+        } catch (Throwable t) {
+            throw AbstractSocketHelper.toIOException(t);
+        }
     }
 
     protected void join(InetAddress inetaddr) throws IOException {
-        helper.invoke(delegate, "join", new Class[]{InetAddress.class}, new Object[]{inetaddr});
+        try {
+            CapedwarfDatagramSocketHelper.JOIN.invokeExact(delegate, inetaddr);
+        } catch (Throwable t) {
+            throw AbstractSocketHelper.toIOException(t);
+        }
     }
 
     protected void leave(InetAddress inetaddr) throws IOException {
-        helper.invoke(delegate, "leave", new Class[]{InetAddress.class}, new Object[]{inetaddr});
+        try {
+            CapedwarfDatagramSocketHelper.LEAVE.invokeExact(delegate, inetaddr);
+        } catch (Throwable t) {
+            throw AbstractSocketHelper.toIOException(t);
+        }
     }
 
     protected void joinGroup(SocketAddress mcastaddr, NetworkInterface netIf) throws IOException {
-        helper.invoke(delegate, "joinGroup", new Class[]{SocketAddress.class, NetworkInterface.class}, new Object[]{mcastaddr, netIf});
+        try {
+            CapedwarfDatagramSocketHelper.JOIN_GROUP.invokeExact(delegate, mcastaddr, netIf);
+        } catch (Throwable t) {
+            throw AbstractSocketHelper.toIOException(t);
+        }
     }
 
     protected void leaveGroup(SocketAddress mcastaddr, NetworkInterface netIf) throws IOException {
-        helper.invoke(delegate, "leaveGroup", new Class[]{SocketAddress.class, NetworkInterface.class}, new Object[]{mcastaddr, netIf});
+        try {
+            CapedwarfDatagramSocketHelper.LEAVE_GROUP.invokeExact(delegate, mcastaddr, netIf);
+        } catch (Throwable t) {
+            throw AbstractSocketHelper.toIOException(t);
+        }
     }
 
     protected void close() {
-        helper.invokeQuiet(delegate, "close");
+        try {
+            CapedwarfDatagramSocketHelper.CLOSE.invokeExact(delegate);
+            if (open.compareAndSet(true, false)) {
+                metrics.closed();
+            }
+        } catch (Throwable t) {
+            throw AbstractSocketHelper.toRuntimeException(t);
+        }
     }
 
     public void setOption(int optID, Object value) throws SocketException {
@@ -129,10 +225,14 @@ class CapedwarfDatagramSocket extends DatagramSocketImpl implements SocketOption
         return helper.getOption(this, optID);
     }
 
-    public Object getDelegate() {
+    public SocketOptions getDelegate() {
         return delegate;
     }
 
+    public SocketMetrics getMetrics() {
+        return metrics;
+    }
+
     public void setOptionInternal(int optID, Object value) throws SocketException {
         helper.setOptionInternal(this, optID, value);
     }
@@ -22,14 +22,34 @@
 
 package org.jboss.capedwarf.shared.socket;
 
-import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.net.DatagramPacket;
 import java.net.DatagramSocketImpl;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketAddress;
 
 /**
  * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
  */
 class CapedwarfDatagramSocketHelper extends AbstractSocketHelper {
-    protected <T> T invoke(Object target, String key, String method, Class[] types, Object[] args) throws IOException {
-        return invoke(target, DatagramSocketImpl.class, key, method, types, args);
-    }
+    static final MethodHandle CONNECT = findHandle(DatagramSocketImpl.class, "connect", InetAddress.class, Integer.TYPE);
+    static final MethodHandle DISCONNECT = findHandle(DatagramSocketImpl.class, "disconnect");
+    static final MethodHandle GET_LOCAL_PORT = findHandle(DatagramSocketImpl.class, "getLocalPort");
+    static final MethodHandle GET_FILE_DESCRIPTOR = findHandle(DatagramSocketImpl.class, "getFileDescriptor");
+    static final MethodHandle CREATE = findHandle(DatagramSocketImpl.class, "create");
+    static final MethodHandle BIND = findHandle(DatagramSocketImpl.class, "bind", Integer.TYPE, InetAddress.class);
+    static final MethodHandle SEND = findHandle(DatagramSocketImpl.class, "send", DatagramPacket.class);
+    static final MethodHandle PEEK = findHandle(DatagramSocketImpl.class, "peek", InetAddress.class);
+    static final MethodHandle PEEK_DATA = findHandle(DatagramSocketImpl.class, "peekData", DatagramPacket.class);
+    static final MethodHandle RECEIVE = findHandle(DatagramSocketImpl.class, "receive", DatagramPacket.class);
+    static final MethodHandle SET_TTL = findHandle(DatagramSocketImpl.class, "setTTL", Byte.TYPE);
+    static final MethodHandle GET_TTL = findHandle(DatagramSocketImpl.class, "getTTL");
+    static final MethodHandle SET_TIME_TO_LIVE = findHandle(DatagramSocketImpl.class, "setTimeToLive", Integer.TYPE);
+    static final MethodHandle GET_TIME_TO_LIVE = findHandle(DatagramSocketImpl.class, "getTimeToLive");
+    static final MethodHandle JOIN = findHandle(DatagramSocketImpl.class, "join", InetAddress.class);
+    static final MethodHandle LEAVE = findHandle(DatagramSocketImpl.class, "leave", InetAddress.class);
+    static final MethodHandle JOIN_GROUP = findHandle(DatagramSocketImpl.class, "joinGroup", SocketAddress.class, NetworkInterface.class);
+    static final MethodHandle LEAVE_GROUP = findHandle(DatagramSocketImpl.class, "leaveGroup", SocketAddress.class, NetworkInterface.class);
+    static final MethodHandle CLOSE = findHandle(DatagramSocketImpl.class, "close");
 }
@@ -31,8 +31,7 @@ import java.net.SocketAddress;
 import java.net.SocketException;
 import java.net.SocketImpl;
 import java.net.SocketOptions;
-
-import org.jboss.capedwarf.shared.compatibility.Compatibility;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
@@ -41,104 +40,265 @@ class CapedwarfSocket extends SocketImpl implements SocketOptionsInternal {
     private static final AbstractSocketHelper helper = new CapedwarfSocketHelper();
 
     private final SocketImpl delegate;
+    private final int bufferSize;
+    private final SocketMetrics metrics;
+    private final AtomicBoolean open = new AtomicBoolean();
+
+    private CapedwarfSocketInputStream inputStream;
+    private volatile CapedwarfSocketOutputStream outputStream;
 
     CapedwarfSocket(SocketImpl delegate) {
+        this(delegate, 0, new SocketMetrics());
+    }
+
+    CapedwarfSocket(SocketImpl delegate, int bufferSize, SocketMetrics metrics) {
         this.delegate = delegate;
+        this.bufferSize = bufferSize;
+        this.metrics = metrics;
+    }
+
+    InputStream getDelegateInputStream() throws IOException {
+        try {
+            return (InputStream) CapedwarfSocketHelper.GET_INPUT_STREAM.invokeExact(delegate);
+        } catch (Throwable t) {
+            throw AbstractSocketHelper.toIOException(t);
+        }
     }
 
-    Object invoke(String method) throws IOException {
-        return helper.invoke(delegate, method);
+    OutputStream getDelegateOutputStream() throws IOException {
+        try {
+            return (OutputStream) CapedwarfSocketHelper.GET_OUTPUT_STREAM.invokeExact(delegate);
+        } catch (Throwable t) {
+            throw AbstractSocketHelper.toIOException(t);
+        }
     }
 
     protected void create(boolean stream) throws IOException {
-        helper.invoke(delegate, "create", new Class[]{Boolean.TYPE}, new Object[]{stream});
+        try {
+            CapedwarfSocketHelper.CREATE.invokeExact(delegate, stream);
+            if (open.compareAndSet(false, true)) {
+                metrics.opened();
+            }
+        } catch (Throwable t) {
+            throw AbstractSocketHelper.toIOException(t);
+        }
     }
 
     protected void connect(String host, int port) throws IOException {
-        helper.invoke(delegate, "connect1", "connect", new Class[]{String.class, Integer.TYPE}, new Object[]{host, port});
+        final long start = System.nanoTime();
+        try {
+            CapedwarfSocketHelper.CONNECT_HOST.invokeExact(delegate, host, port);
+            metrics.connected(start);
+        } catch (Throwable t) {
+            metrics.connectFailed();
+            throw AbstractSocketHelper.toIOException(t);
+        }
     }
 
     protected void connect(InetAddress address, int port) throws IOException {
-        helper.invoke(delegate, "connect2", "connect", new Class[]{InetAddress.class, Integer.TYPE}, new Object[]{address, port});
+        final long start = System.nanoTime();
+        try {
+            CapedwarfSocketHelper.CONNECT_ADDRESS.invokeExact(delegate, address, port);
+            metrics.connected(start);
+        } catch (Throwable t) {
+            metrics.connectFailed();
+            throw AbstractSocketHelper.toIOException(t);
+        }
     }
 
     protected void connect(SocketAddress address, int timeout) throws IOException {
-        helper.invoke(delegate, "connect3", "connect", new Class[]{SocketAddress.class, Integer.TYPE}, new Object[]{address, timeout});
+        final long start = System.nanoTime();
+        try {
+            CapedwarfSocketHelper.CONNECT_SOCKET_ADDRESS.invokeExact(delegate, address, timeout);
+            metrics.connected(start);
+        } catch (Throwable t) {
+            metrics.connectFailed();
+            throw AbstractSocketHelper.toIOException(t);
+        }
     }
 
     protected void bind(InetAddress host, int port) throws IOException {
-        helper.invoke(delegate, "bind", new Class[]{InetAddress.class, Integer.TYPE}, new Object[]{host, port});
+        try {
+            CapedwarfSocketHelper.BIND.invokeExact(delegate, host, port);
+        } catch (Throwable t) {
+            throw AbstractSocketHelper.toIOException(t);
+        }
     }
 
     protected void listen(int backlog) throws IOException {
-        helper.invoke(delegate, "listen", new Class[]{Integer.TYPE}, new Object[]{backlog});
+        try {
+            CapedwarfSocketHelper.LISTEN.invokeExact(delegate, backlog);
+        } catch (Throwable t) {
+            throw AbstractSocketHelper.toIOException(t);
+        }
     }
 
     protected void accept(SocketImpl s) throws IOException {
-        helper.invoke(delegate, "accept", new Class[]{SocketImpl.class}, new Object[]{s});
+        try {
+            CapedwarfSocketHelper.ACCEPT.invokeExact(delegate, s);
+        } catch (Throwable t) {
+            throw AbstractSocketHelper.toIOException(t);
+        }
     }
 
-    protected InputStream getInputStream() throws IOException {
-        return new CapedwarfSocketInputStream(this);
+    protected synchronized InputStream getInputStream() throws IOException {
+        if (inputStream == null) {
+            inputStream = new CapedwarfSocketInputStream(this, bufferSize);
+        }
+        return inputStream;
+    }
+
+    /**
+     * Push out buffered writes, before we block on a read;
+     * a client might wait for a response to a request it never flushed.
+     *
+     * @throws IOException for any I/O error
+     */
+    void flushPendingOutput() throws IOException {
+        final CapedwarfSocketOutputStream os = outputStream;
+        if (os != null) {
+            os.flushPending();
+        }
     }
 
-    protected OutputStream getOutputStream() throws IOException {
-        return new CapedwarfSocketOutputStream(this);
+    protected synchronized OutputStream getOutputStream() throws IOException {
+        if (outputStream == null) {
+            outputStream = new CapedwarfSocketOutputStream(this, bufferSize);
+        }
+        return outputStream;
     }
 
     protected int available() throws IOException {
-        return helper.invoke(delegate, "available", new Class[0], new Object[0]);
+        try {
+            return (int) CapedwarfSocketHelper.AVAILABLE.invokeExact(delegate);
+        } catch (Throwable t) {
+            throw AbstractSocketHelper.toIOException(t);
+        }
     }
 
     protected void close() throws IOException {
-        helper.invoke(delegate, "close", new Class[0], new Object[0]);
+        final CapedwarfSocketInputStream is;
+        final CapedwarfSocketOutputStream os;
+        synchronized (this) {
+            is = inputStream;
+            os = outputStream;
+        }
+        Throwable failure = null;
+        try {
+            if (os != null && bufferSize > 0) {
+                os.flush(); // don't lose buffered data
+            }
+        } catch (Throwable t) {
+            failure = t;
+            throw t;
+        } finally {
+            try {
+                closeDelegate();
+            } catch (IOException | RuntimeException | Error e) {
+                if (failure == null) {
+                    throw e;
+                }
+                failure.addSuppressed(e);
+            } finally {
+                // after the delegate, so blocked reads and writes bail out first
+                if (is != null) {
+                    is.release();
+                }
+                if (os != null) {
+                    os.release();
+                }
+            }
+        }
+    }
+
+    private void closeDelegate() throws IOException {
+        try {
+            CapedwarfSocketHelper.CLOSE.invokeExact(delegate);
+            if (open.compareAndSet(true, false)) {
+                metrics.closed();
+            }
+        } catch (Throwable t) {
+            throw AbstractSocketHelper.toIOException(t);
+        }
     }
 
     protected void sendUrgentData(int data) throws IOException {
-        helper.invoke(delegate, "sendUrgentData", new Class[]{Integer.TYPE}, new Object[]{data});
+        try {
+            CapedwarfSocketHelper.SEND_URGENT_DATA.invokeExact(delegate, data);
+        } catch (Throwable t) {
+            throw AbstractSocketHelper.toIOException(t);
+        }
     }
 
     @Override
     protected void shutdownInput() throws IOException {
-        helper.invoke(delegate, "shutdownInput");
+        try {
+            CapedwarfSocketHelper.SHUTDOWN_INPUT.invokeExact(delegate);
+        } catch (Throwable t) {
+            throw AbstractSocketHelper.toIOException(t);
+        }
     }
 
     @Override
     protected void shutdownOutput() throws IOException {
-        helper.invoke(delegate, "shutdownOutput");
+        try {
+            CapedwarfSocketHelper.SHUTDOWN_OUTPUT.invokeExact(delegate);
+        } catch (Throwable t) {
+            throw AbstractSocketHelper.toIOException(t);
+        }
     }
 
     @Override
     protected FileDescriptor getFileDescriptor() {
-        return helper.invokeQuiet(delegate, "getFileDescriptor");
+        try {
+            return (FileDescriptor) CapedwarfSocketHelper.GET_FILE_DESCRIPTOR.invokeExact(delegate);
+        } catch (Throwable t) {
+            throw AbstractSocketHelper.toRuntimeException(t);
+        }
     }
 
     @Override
     protected InetAddress getInetAddress() {
-        return helper.invokeQuiet(delegate, "getInetAddress");
+        try {
+            return (InetAddress) CapedwarfSocketHelper.GET_INET_ADDRESS.invokeExact(delegate);
+        } catch (Throwable t) {
+            throw AbstractSocketHelper.toRuntimeException(t);
+        }
     }
 
     @Override
     protected int getPort() {
-        return helper.invokeQuiet(delegate, "getPort");
+        try {
+            return (int) CapedwarfSocketHelper.GET_PORT.invokeExact(delegate);
+        } catch (Throwable t) {
+            throw AbstractSocketHelper.toRuntimeException(t);
+        }
     }
 
     @Override
     protected boolean supportsUrgentData() {
-        return helper.invokeQuiet(delegate, "supportsUrgentData");
+        try {
+            return (boolean) CapedwarfSocketHelper.SUPPORTS_URGENT_DATA.invokeExact(delegate);
+        } catch (Throwable t) {
+            throw AbstractSocketHelper.toRuntimeException(t);
+        }
     }
 
     @Override
     protected int getLocalPort() {
-        return helper.invokeQuiet(delegate, "getLocalPort");
+        try {
+            return (int) CapedwarfSocketHelper.GET_LOCAL_PORT.invokeExact(delegate);
+        } catch (Throwable t) {
+            throw AbstractSocketHelper.toRuntimeException(t);
+        }
     }
 
     @Override
     protected void setPerformancePreferences(int connectionTime, int latency, int bandwidth) {
         try {
-            helper.invoke(delegate, "setPerformancePreferences", new Class[]{Integer.TYPE, Integer.TYPE, Integer.TYPE}, new Object[]{connectionTime, latency, bandwidth});
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+            CapedwarfSocketHelper.SET_PERFORMANCE_PREFERENCES.invokeExact(delegate, connectionTime, latency, bandwidth);
+        } catch (Throwable t) {
+            throw AbstractSocketHelper.toRuntimeException(t);
         }
     }
 
@@ -150,10 +310,14 @@ class CapedwarfSocket extends SocketImpl implements SocketOptionsInternal {
         return helper.getOption(this, optID);
     }
 
-    public Object getDelegate() {
+    public SocketOptions getDelegate() {
         return delegate;
     }
 
+    public SocketMetrics getMetrics() {
+        return metrics;
+    }
+
     public void setOptionInternal(int optID, Object value) throws SocketException {
         helper.setOptionInternal(this, optID, value);
     }
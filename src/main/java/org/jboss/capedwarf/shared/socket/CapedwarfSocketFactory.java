@@ -32,6 +32,7 @@ import java.net.SocketImplFactory;
 
 import org.jboss.capedwarf.shared.compatibility.Compatibility;
 import org.jboss.capedwarf.shared.components.AppIdFactory;
+import org.jboss.capedwarf.shared.components.SimpleKey;
 
 /**
  * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
@@ -39,15 +40,14 @@ import org.jboss.capedwarf.shared.components.AppIdFactory;
 public class CapedwarfSocketFactory implements SocketImplFactory, DatagramSocketImplFactory {
     public static final CapedwarfSocketFactory INSTANCE = new CapedwarfSocketFactory();
 
+    private static final String MULTICAST_SOCKET = MulticastSocket.class.getName();
+
     private CapedwarfSocketFactory() {
     }
 
     SocketImpl createDelegate() {
         try {
-            Class<?> clazz = getClass().getClassLoader().loadClass("java.net.SocksSocketImpl");
-            Constructor<?> ctor = clazz.getDeclaredConstructor();
-            ctor.setAccessible(true);
-            return (SocketImpl) ctor.newInstance();
+            return (SocketImpl) Delegates.SOCKET_CTOR.newInstance();
         } catch (Throwable t) {
             throw new IllegalStateException(t);
         }
@@ -55,18 +55,15 @@ public class CapedwarfSocketFactory implements SocketImplFactory, DatagramSocket
 
     DatagramSocketImpl createDatagramDelegate() {
         try {
-            Class<?> clazz = getClass().getClassLoader().loadClass("java.net.DefaultDatagramSocketImplFactory");
-            Method method = clazz.getDeclaredMethod("createDatagramSocketImpl", Boolean.TYPE);
-            method.setAccessible(true);
-            return (DatagramSocketImpl) method.invoke(null, isInvokedFromMulticastSocket());
+            return Delegates.createDatagramSocketImpl(Delegates.MULTICAST_AWARE && isInvokedFromMulticastSocket());
         } catch (Throwable t) {
             throw new IllegalStateException(t);
         }
     }
 
     private static boolean isInvokedFromMulticastSocket() {
-        for (StackTraceElement element : Thread.currentThread().getStackTrace()) {
-            if (element.getClassName().equals(MulticastSocket.class.getName())) {
+        for (StackTraceElement element : new Throwable().getStackTrace()) {
+            if (MULTICAST_SOCKET.equals(element.getClassName())) {
                 return true;
             }
         }
@@ -74,7 +71,19 @@ public class CapedwarfSocketFactory implements SocketImplFactory, DatagramSocket
     }
 
     private static boolean isIgnoreCapedwarfSockets() {
-        return (AppIdFactory.hasAppId() == false || Compatibility.getInstance().isEnabled(Compatibility.Feature.IGNORE_CAPEDWARF_SOCKETS));
+        return (AppIdFactory.hasAppId() == false || getCompatibility().isEnabled(Compatibility.Feature.IGNORE_CAPEDWARF_SOCKETS));
+    }
+
+    private static Compatibility getCompatibility() {
+        return Compatibility.getInstance(SimpleKey.withCurrentApp(Compatibility.class));
+    }
+
+    private static int getStreamBufferSize() {
+        final Compatibility compatibility = getCompatibility();
+        if (compatibility.isEnabled(Compatibility.Feature.SOCKET_STREAM_BUFFER_SIZE)) {
+            return (Integer) compatibility.toObject(Compatibility.Feature.SOCKET_STREAM_BUFFER_SIZE);
+        }
+        return 0;
     }
 
     public SocketImpl createSocketImpl() {
@@ -84,7 +93,7 @@ public class CapedwarfSocketFactory implements SocketImplFactory, DatagramSocket
             return delegate;
         }
 
-        return new CapedwarfSocket(delegate);
+        return new CapedwarfSocket(delegate, getStreamBufferSize(), SocketMetrics.getInstance());
     }
 
     public DatagramSocketImpl createDatagramSocketImpl() {
@@ -94,6 +103,40 @@ public class CapedwarfSocketFactory implements SocketImplFactory, DatagramSocket
             return delegate;
         }
 
-        return new CapedwarfDatagramSocket(delegate);
+        return new CapedwarfDatagramSocket(delegate, SocketMetrics.getInstance());
+    }
+
+    /**
+     * Lazily resolved JDK delegate factories.
+     *
+     * The multicast flag only matters if the platform factory hands out
+     * a different impl for it (e.g. Windows dual stack), so we only walk the stack then.
+     */
+    private static final class Delegates {
+        private static final Constructor<?> SOCKET_CTOR;
+        private static final Method DATAGRAM_FACTORY;
+        private static final boolean MULTICAST_AWARE;
+
+        static {
+            try {
+                final ClassLoader cl = CapedwarfSocketFactory.class.getClassLoader();
+
+                Class<?> socketClass = cl.loadClass("java.net.SocksSocketImpl");
+                SOCKET_CTOR = socketClass.getDeclaredConstructor();
+                SOCKET_CTOR.setAccessible(true);
+
+                Class<?> factoryClass = cl.loadClass("java.net.DefaultDatagramSocketImplFactory");
+                DATAGRAM_FACTORY = factoryClass.getDeclaredMethod("createDatagramSocketImpl", Boolean.TYPE);
+                DATAGRAM_FACTORY.setAccessible(true);
+
+                MULTICAST_AWARE = (createDatagramSocketImpl(false).getClass() != createDatagramSocketImpl(true).getClass());
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static DatagramSocketImpl createDatagramSocketImpl(boolean multicast) throws Exception {
+            return (DatagramSocketImpl) DATAGRAM_FACTORY.invoke(null, multicast);
+        }
     }
 }
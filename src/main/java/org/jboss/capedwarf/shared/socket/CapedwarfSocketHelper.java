@@ -22,14 +22,33 @@
 
 package org.jboss.capedwarf.shared.socket;
 
-import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.net.InetAddress;
+import java.net.SocketAddress;
 import java.net.SocketImpl;
 
 /**
  * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
  */
 class CapedwarfSocketHelper extends AbstractSocketHelper {
-    protected <T> T invoke(Object target, String key, String method, Class[] types, Object[] args) throws IOException {
-        return invoke(target, SocketImpl.class, key, method, types, args);
-    }
+    static final MethodHandle CREATE = findHandle(SocketImpl.class, "create", Boolean.TYPE);
+    static final MethodHandle CONNECT_HOST = findHandle(SocketImpl.class, "connect", String.class, Integer.TYPE);
+    static final MethodHandle CONNECT_ADDRESS = findHandle(SocketImpl.class, "connect", InetAddress.class, Integer.TYPE);
+    static final MethodHandle CONNECT_SOCKET_ADDRESS = findHandle(SocketImpl.class, "connect", SocketAddress.class, Integer.TYPE);
+    static final MethodHandle BIND = findHandle(SocketImpl.class, "bind", InetAddress.class, Integer.TYPE);
+    static final MethodHandle LISTEN = findHandle(SocketImpl.class, "listen", Integer.TYPE);
+    static final MethodHandle ACCEPT = findHandle(SocketImpl.class, "accept", SocketImpl.class);
+    static final MethodHandle GET_INPUT_STREAM = findHandle(SocketImpl.class, "getInputStream");
+    static final MethodHandle GET_OUTPUT_STREAM = findHandle(SocketImpl.class, "getOutputStream");
+    static final MethodHandle AVAILABLE = findHandle(SocketImpl.class, "available");
+    static final MethodHandle CLOSE = findHandle(SocketImpl.class, "close");
+    static final MethodHandle SEND_URGENT_DATA = findHandle(SocketImpl.class, "sendUrgentData", Integer.TYPE);
+    static final MethodHandle SHUTDOWN_INPUT = findHandle(SocketImpl.class, "shutdownInput");
+    static final MethodHandle SHUTDOWN_OUTPUT = findHandle(SocketImpl.class, "shutdownOutput");
+    static final MethodHandle GET_FILE_DESCRIPTOR = findHandle(SocketImpl.class, "getFileDescriptor");
+    static final MethodHandle GET_INET_ADDRESS = findHandle(SocketImpl.class, "getInetAddress");
+    static final MethodHandle GET_PORT = findHandle(SocketImpl.class, "getPort");
+    static final MethodHandle SUPPORTS_URGENT_DATA = findHandle(SocketImpl.class, "supportsUrgentData");
+    static final MethodHandle GET_LOCAL_PORT = findHandle(SocketImpl.class, "getLocalPort");
+    static final MethodHandle SET_PERFORMANCE_PREFERENCES = findHandle(SocketImpl.class, "setPerformancePreferences", Integer.TYPE, Integer.TYPE, Integer.TYPE);
 }
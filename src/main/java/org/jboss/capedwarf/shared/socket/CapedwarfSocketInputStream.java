@@ -24,53 +24,200 @@ package org.jboss.capedwarf.shared.socket;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
+ * Optionally buffered, see Compatibility.Feature.SOCKET_STREAM_BUFFER_SIZE.
+ * Buffers are pooled and only returned once no read can use them anymore.
+ * When buffered, pending output is flushed before we go to the socket, see CapedwarfSocketOutputStream.
+ *
  * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
  */
 class CapedwarfSocketInputStream extends InputStream {
+    private final CapedwarfSocket socket;
     private final InputStream delegate;
+    private final int bufferSize;
+    private final SocketMetrics metrics;
+
+    private byte[] buffer;
+    private int pos;
+    private int count;
+
+    CapedwarfSocketInputStream(CapedwarfSocket socket, int bufferSize) throws IOException {
+        this.socket = socket;
+        this.delegate = socket.getDelegateInputStream();
+        this.bufferSize = bufferSize;
+        this.metrics = socket.getMetrics();
+    }
+
+    private boolean isBuffered() {
+        return bufferSize > 0;
+    }
 
-    CapedwarfSocketInputStream(CapedwarfSocket socket) throws IOException {
-        this.delegate = (InputStream) socket.invoke("getInputStream");
+    private int fill() throws IOException {
+        if (buffer == null) {
+            buffer = StreamBuffers.take(bufferSize);
+        }
+        pos = 0;
+        count = 0;
+        socket.flushPendingOutput();
+        int n = delegate.read(buffer, 0, buffer.length);
+        if (n > 0) {
+            count = n;
+            metrics.read(n);
+        }
+        return n;
+    }
+
+    private int counted(int n) {
+        metrics.read(n);
+        return n;
     }
 
     public int read() throws IOException {
-        return delegate.read();
+        if (isBuffered() == false) {
+            int b = delegate.read();
+            if (b >= 0) {
+                metrics.read(1);
+            }
+            return b;
+        }
+        synchronized (this) {
+            if (pos >= count && fill() <= 0) {
+                return -1;
+            }
+            return buffer[pos++] & 0xff;
+        }
     }
 
     @Override
     public int read(byte b[], int off, int len) throws IOException {
-        return delegate.read(b, off, len);
+        if (isBuffered() == false) {
+            return counted(delegate.read(b, off, len));
+        }
+        synchronized (this) {
+            if (len == 0) {
+                return 0;
+            }
+            int available = count - pos;
+            if (available <= 0) {
+                if (len >= bufferSize) {
+                    socket.flushPendingOutput();
+                    return counted(delegate.read(b, off, len)); // bulk read, bypass buffer
+                }
+                if (fill() <= 0) {
+                    return -1;
+                }
+                available = count;
+            }
+            int n = Math.min(available, len);
+            System.arraycopy(buffer, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+    }
+
+    /**
+     * Bulk copy the rest of the stream.
+     *
+     * @param out the output
+     * @return number of bytes copied
+     * @throws IOException for any I/O error
+     */
+    public long transferTo(OutputStream out) throws IOException {
+        long total = 0;
+        synchronized (this) {
+            if (count > pos) {
+                out.write(buffer, pos, count - pos);
+                total += (count - pos);
+                pos = count;
+            }
+        }
+        if (isBuffered()) {
+            socket.flushPendingOutput();
+        }
+        final byte[] chunk = StreamBuffers.take(isBuffered() ? bufferSize : 8192);
+        try {
+            int n;
+            while ((n = delegate.read(chunk, 0, chunk.length)) > 0) {
+                metrics.read(n);
+                out.write(chunk, 0, n);
+                total += n;
+            }
+        } finally {
+            StreamBuffers.release(chunk);
+        }
+        return total;
     }
 
     @Override
     public int available() throws IOException {
-        return delegate.available();
+        if (isBuffered() == false) {
+            return delegate.available();
+        }
+        synchronized (this) {
+            socket.flushPendingOutput();
+            return (count - pos) + delegate.available();
+        }
     }
 
     @Override
     public long skip(long n) throws IOException {
-        return delegate.skip(n);
+        if (isBuffered() == false) {
+            return delegate.skip(n);
+        }
+        synchronized (this) {
+            if (n <= 0) {
+                return 0;
+            }
+            int available = count - pos;
+            if (available <= 0) {
+                socket.flushPendingOutput();
+                return delegate.skip(n);
+            }
+            long skipped = Math.min(available, n);
+            pos += skipped;
+            return skipped;
+        }
     }
 
     @Override
     public synchronized void mark(int readlimit) {
-        delegate.mark(readlimit);
+        if (isBuffered() == false) {
+            delegate.mark(readlimit);
+        }
     }
 
     @Override
     public synchronized void reset() throws IOException {
+        if (isBuffered()) {
+            throw new IOException("mark/reset not supported");
+        }
         delegate.reset();
     }
 
     @Override
     public boolean markSupported() {
-        return delegate.markSupported();
+        return isBuffered() == false && delegate.markSupported();
     }
 
     @Override
     public void close() throws IOException {
+        // close first, so any blocked read bails out and releases the lock
         delegate.close();
+        release();
+    }
+
+    /**
+     * Return the buffer to the pool, once the socket is closed.
+     */
+    void release() {
+        if (isBuffered()) {
+            synchronized (this) {
+                StreamBuffers.release(buffer);
+                buffer = null;
+                pos = count = 0;
+            }
+        }
     }
 }
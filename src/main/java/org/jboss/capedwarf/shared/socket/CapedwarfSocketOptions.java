@@ -219,6 +219,8 @@ class CapedwarfSocketOptions {
         void setOption(SocketOptionsInternal socketImpl, Object value) throws SocketException {
             if (isSetEnabled()) {
                 socketImpl.setOptionInternal(getOpt(), value);
+            } else {
+                socketImpl.getMetrics().optionRejected();
             }
         }
 
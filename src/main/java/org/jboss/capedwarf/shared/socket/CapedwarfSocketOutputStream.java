@@ -24,32 +24,155 @@ package org.jboss.capedwarf.shared.socket;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
+ * Optionally buffered, see Compatibility.Feature.SOCKET_STREAM_BUFFER_SIZE.
+ *
+ * Buffered bytes are also pushed out before the paired input stream blocks on a read,
+ * so request / response clients that never flush don't deadlock.
+ *
  * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
  */
 class CapedwarfSocketOutputStream extends OutputStream {
     private final OutputStream delegate;
+    private final int bufferSize;
+    private final SocketMetrics metrics;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private byte[] buffer;
+    private volatile int count;
+
+    CapedwarfSocketOutputStream(CapedwarfSocket socket, int bufferSize) throws IOException {
+        this.delegate = socket.getDelegateOutputStream();
+        this.bufferSize = bufferSize;
+        this.metrics = socket.getMetrics();
+    }
+
+    private boolean isBuffered() {
+        return bufferSize > 0;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            delegate.write(buffer, 0, count);
+            metrics.written(count);
+            count = 0;
+        }
+    }
+
+    /**
+     * Flush buffered bytes, if any.
+     * Waits for a concurrent write, which only holds the lock while copying or writing through,
+     * so its bytes are pushed out too.
+     *
+     * @throws IOException for any I/O error
+     */
+    void flushPending() throws IOException {
+        if (count > 0) {
+            lock.lock();
+            try {
+                flushBuffer();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
 
-    CapedwarfSocketOutputStream(CapedwarfSocket socket) throws IOException {
-        this.delegate = (OutputStream) socket.invoke("getOutputStream");
+    /**
+     * Return the buffer to the pool, once the socket is closed.
+     */
+    void release() {
+        if (isBuffered()) {
+            lock.lock();
+            try {
+                StreamBuffers.release(buffer);
+                buffer = null;
+                count = 0;
+            } finally {
+                lock.unlock();
+            }
+        }
     }
 
     public void write(int b) throws IOException {
-        delegate.write(b);
+        if (isBuffered() == false) {
+            delegate.write(b);
+            metrics.written(1);
+            return;
+        }
+        lock.lock();
+        try {
+            if (buffer == null) {
+                buffer = StreamBuffers.take(bufferSize);
+            }
+            if (count >= buffer.length) {
+                flushBuffer();
+            }
+            buffer[count++] = (byte) b;
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
     public void write(byte buf[], int off, int len) throws IOException {
-        delegate.write(buf, off, len);
+        if (isBuffered() == false) {
+            delegate.write(buf, off, len);
+            metrics.written(len);
+            return;
+        }
+        lock.lock();
+        try {
+            if (len >= bufferSize) {
+                // bulk write, bypass buffer
+                flushBuffer();
+                delegate.write(buf, off, len);
+                metrics.written(len);
+                return;
+            }
+            if (buffer == null) {
+                buffer = StreamBuffers.take(bufferSize);
+            }
+            if (len > buffer.length - count) {
+                flushBuffer();
+            }
+            System.arraycopy(buf, off, buffer, count, len);
+            count += len;
+        } finally {
+            lock.unlock();
+        }
     }
 
     public void flush() throws IOException {
+        if (isBuffered()) {
+            lock.lock();
+            try {
+                flushBuffer();
+            } finally {
+                lock.unlock();
+            }
+        }
         delegate.flush();
     }
 
     @Override
     public void close() throws IOException {
-        delegate.close();
+        try {
+            if (isBuffered()) {
+                lock.lock();
+                try {
+                    flushBuffer();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } finally {
+            try {
+                delegate.close();
+            } finally {
+                release();
+            }
+        }
     }
 }
@@ -30,7 +30,10 @@ import org.jboss.capedwarf.shared.compatibility.Compatibility;
 
 /**
  * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
+ * @deprecated no longer used by shared, url connections go through CapedwarfURLConnectionSupport;
+ * kept, like BytecodeUtils, as api for the other Capedwarf modules
  */
+@Deprecated
 public abstract class DisableSocketsMethodHandler implements MethodHandler {
     protected abstract Object getDelegate();
 
@@ -0,0 +1,211 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.capedwarf.shared.socket;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.jboss.capedwarf.shared.components.AppIdFactory;
+import org.jboss.capedwarf.shared.components.ComponentRegistry;
+import org.jboss.capedwarf.shared.components.Key;
+import org.jboss.capedwarf.shared.components.SimpleKey;
+
+/**
+ * Per app / module socket metrics, registered as a component.
+ *
+ * Recording only touches atomic counters, no locks nor allocation;
+ * latencies go into power-of-two microsecond buckets.
+ *
+ * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
+ */
+public final class SocketMetrics {
+    private final AtomicLong openSockets = new AtomicLong();
+    private final AtomicLong totalSockets = new AtomicLong();
+    private final AtomicLong connects = new AtomicLong();
+    private final AtomicLong failedConnects = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+    private final AtomicLong rejectedOptions = new AtomicLong();
+    private final Histogram connectTime = new Histogram();
+
+    SocketMetrics() {
+    }
+
+    /**
+     * Get current app's metrics.
+     *
+     * @return the metrics, or null if there is no app
+     */
+    public static SocketMetrics getInstance() {
+        if (AppIdFactory.hasAppId() == false) {
+            return null;
+        }
+        return getInstance(AppIdFactory.getAppId(), AppIdFactory.getModule());
+    }
+
+    public static SocketMetrics getInstance(String appId, String module) {
+        Key<SocketMetrics> key = new SimpleKey<>(appId, module, SocketMetrics.class);
+        ComponentRegistry registry = ComponentRegistry.getInstance();
+        SocketMetrics metrics = registry.getComponent(key);
+        if (metrics == null) {
+            metrics = new SocketMetrics();
+            SocketMetrics previous = registry.putIfAbsent(key, metrics);
+            if (previous != null) {
+                metrics = previous;
+            }
+        }
+        return metrics;
+    }
+
+    // --- recording
+
+    void opened() {
+        openSockets.incrementAndGet();
+        totalSockets.incrementAndGet();
+    }
+
+    void closed() {
+        openSockets.decrementAndGet();
+    }
+
+    void connected(long startNanos) {
+        connects.incrementAndGet();
+        connectTime.record(System.nanoTime() - startNanos);
+    }
+
+    void connectFailed() {
+        failedConnects.incrementAndGet();
+    }
+
+    void read(long bytes) {
+        if (bytes > 0) {
+            bytesIn.addAndGet(bytes);
+        }
+    }
+
+    void written(long bytes) {
+        if (bytes > 0) {
+            bytesOut.addAndGet(bytes);
+        }
+    }
+
+    void optionRejected() {
+        rejectedOptions.incrementAndGet();
+    }
+
+    // --- reading
+
+    public long getOpenSockets() {
+        return openSockets.get();
+    }
+
+    public long getTotalSockets() {
+        return totalSockets.get();
+    }
+
+    public long getConnects() {
+        return connects.get();
+    }
+
+    public long getFailedConnects() {
+        return failedConnects.get();
+    }
+
+    public long getBytesIn() {
+        return bytesIn.get();
+    }
+
+    public long getBytesOut() {
+        return bytesOut.get();
+    }
+
+    public long getRejectedOptions() {
+        return rejectedOptions.get();
+    }
+
+    /**
+     * Connect time histogram.
+     *
+     * @return bucket upper bound in microseconds -> count, only non-empty buckets
+     */
+    public Map<Long, Long> getConnectTimeHistogram() {
+        return connectTime.snapshot();
+    }
+
+    /**
+     * Average connect time.
+     *
+     * @return average connect time in microseconds
+     */
+    public long getAverageConnectTime() {
+        return connectTime.average();
+    }
+
+    @Override
+    public String toString() {
+        return "SocketMetrics[open=" + getOpenSockets() +
+            ", total=" + getTotalSockets() +
+            ", connects=" + getConnects() +
+            ", failedConnects=" + getFailedConnects() +
+            ", avgConnectMicros=" + getAverageConnectTime() +
+            ", bytesIn=" + getBytesIn() +
+            ", bytesOut=" + getBytesOut() +
+            ", rejectedOptions=" + getRejectedOptions() + "]";
+    }
+
+    private static final class Histogram {
+        private static final int BUCKETS = 32; // last one is open ended
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+
+        void record(long nanos) {
+            final long micros = Math.max(TimeUnit.NANOSECONDS.toMicros(nanos), 0);
+            // bucket i holds [2^(i-1), 2^i) micros
+            final int index = Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+            buckets.incrementAndGet(index);
+            count.incrementAndGet();
+            sum.addAndGet(micros);
+        }
+
+        long average() {
+            final long n = count.get();
+            return (n > 0) ? sum.get() / n : 0;
+        }
+
+        Map<Long, Long> snapshot() {
+            final Map<Long, Long> map = new LinkedHashMap<>();
+            for (int i = 0; i < BUCKETS; i++) {
+                long n = buckets.get(i);
+                if (n > 0) {
+                    map.put((i < BUCKETS - 1) ? (1L << i) : Long.MAX_VALUE, n);
+                }
+            }
+            return map;
+        }
+    }
+}
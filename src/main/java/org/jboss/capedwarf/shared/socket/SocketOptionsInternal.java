@@ -23,12 +23,15 @@
 package org.jboss.capedwarf.shared.socket;
 
 import java.net.SocketException;
+import java.net.SocketOptions;
 
 /**
  * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
  */
 interface SocketOptionsInternal {
-    Object getDelegate();
+    SocketOptions getDelegate();
+
+    SocketMetrics getMetrics();
 
     void setOptionInternal(int optID, Object value) throws SocketException;
     Object getOptionInternal(int optID) throws SocketException;
@@ -1,6 +1,6 @@
 /*
  * JBoss, Home of Professional Open Source.
- * Copyright 2013, Red Hat, Inc., and individual contributors
+ * Copyright 2014, Red Hat, Inc., and individual contributors
  * as indicated by the @author tags. See the copyright.txt file in the
  * distribution for a full listing of individual contributors.
  *
@@ -20,31 +20,42 @@
  * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
  */
 
-package org.jboss.capedwarf.shared.url;
+package org.jboss.capedwarf.shared.socket;
 
-import java.lang.Class;import java.lang.Object;
-import java.net.HttpURLConnection;
-import java.net.URL;
-
-import javassist.util.proxy.MethodHandler;
-
-import org.jboss.capedwarf.shared.bytecode.BytecodeUtils;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
+ * Bounded, lock-free pool of socket stream buffers.
+ *
  * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
  */
-class CapedwarfURLConnectionProxyFactory {
-    private static final Class<?>[] PARAM_TYPES = new Class[]{URL.class};
+final class StreamBuffers {
+    private static final int MAX_POOLED = 256;
+
+    private static final Queue<byte[]> pool = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger pooled = new AtomicInteger();
 
-    private static <T extends HttpURLConnection> T wrap(Class<T> exactType, MethodHandler handler, HttpURLConnection delegate) {
-        return BytecodeUtils.proxy(exactType, handler, PARAM_TYPES, new Object[]{delegate.getURL()});
+    private StreamBuffers() {
     }
 
-    static <T extends HttpURLConnection> T basic(Class<T> exactType, HttpURLConnection delegate) {
-        return wrap(exactType, new DefaultURLConnectionProxyHandler(delegate), delegate);
+    static byte[] take(int size) {
+        byte[] buffer = pool.poll();
+        if (buffer != null) {
+            pooled.decrementAndGet();
+            if (buffer.length == size) {
+                return buffer;
+            }
+        }
+        return new byte[size];
     }
 
-    static <T extends HttpURLConnection> T streaming(Class<T> exactType, HttpURLConnection delegate) {
-        return wrap(exactType, new CapedwarfURLConnectionProxyHandler(delegate), delegate);
+    static void release(byte[] buffer) {
+        if (buffer != null && pooled.incrementAndGet() <= MAX_POOLED) {
+            pool.offer(buffer);
+        } else if (buffer != null) {
+            pooled.decrementAndGet();
+        }
     }
 }
@@ -0,0 +1,288 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.capedwarf.shared.url;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.jboss.capedwarf.shared.components.AppIdFactory;
+import org.jboss.capedwarf.shared.components.ComponentRegistry;
+import org.jboss.capedwarf.shared.components.Keys;
+import org.jboss.capedwarf.shared.components.SimpleAppIdFactory;
+import org.jboss.capedwarf.shared.util.Utils;
+
+/**
+ * Async url fetch, on the shared executor.
+ *
+ * Fetches go through java.net.URL, so the same CapedwarfURLStreamHandlerFactory policy applies:
+ * default handlers, socket bypass, compatibility and per-host limits.
+ * Caller's TCCL and app id are propagated to the worker.
+ *
+ * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
+ */
+public final class AsyncURLFetcher {
+    private final ExecutorService executor;
+
+    public AsyncURLFetcher(ExecutorService executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Null executor!");
+        }
+        this.executor = executor;
+    }
+
+    /**
+     * Fetcher on the shared executor, see Keys.EXECUTOR_SERVICE.
+     *
+     * @return the fetcher
+     */
+    public static AsyncURLFetcher getInstance() {
+        final ExecutorService executor = ComponentRegistry.getInstance().getComponent(Keys.EXECUTOR_SERVICE);
+        if (executor == null) {
+            throw new IllegalStateException("No shared executor service registered!");
+        }
+        return new AsyncURLFetcher(executor);
+    }
+
+    public Future<Response> fetch(URL url) {
+        return fetch(new Request(url));
+    }
+
+    public Future<Response> fetch(Request request) {
+        if (request == null) {
+            throw new IllegalArgumentException("Null request!");
+        }
+        final ClassLoader cl = Utils.getTCCL();
+        final AppIdFactory appIdFactory = AppIdFactory.hasAppId() ? new SimpleAppIdFactory(AppIdFactory.getAppId(), AppIdFactory.getModule()) : null;
+        return executor.submit(new Fetch(request, cl, appIdFactory));
+    }
+
+    /**
+     * Fetch all, each one async.
+     *
+     * @param requests the requests
+     * @return futures, in requests' order
+     */
+    public List<Future<Response>> fetchAll(List<Request> requests) {
+        final List<Future<Response>> futures = new ArrayList<>(requests.size());
+        for (Request request : requests) {
+            futures.add(fetch(request));
+        }
+        return futures;
+    }
+
+    private static class Fetch implements Callable<Response> {
+        private final Request request;
+        private final ClassLoader cl;
+        private final AppIdFactory appIdFactory;
+
+        private Fetch(Request request, ClassLoader cl, AppIdFactory appIdFactory) {
+            this.request = request;
+            this.cl = cl;
+            this.appIdFactory = appIdFactory;
+        }
+
+        public Response call() throws Exception {
+            final ClassLoader previous = Utils.setTCCL(cl);
+            if (appIdFactory != null) {
+                AppIdFactory.setCurrentFactory(appIdFactory);
+            }
+            try {
+                return execute();
+            } finally {
+                if (appIdFactory != null) {
+                    AppIdFactory.resetCurrentFactory();
+                }
+                Utils.setTCCL(previous);
+            }
+        }
+
+        private Response execute() throws IOException {
+            final HttpURLConnection connection = (HttpURLConnection) request.getUrl().openConnection();
+            try {
+                connection.setRequestMethod(request.getMethod());
+                connection.setInstanceFollowRedirects(request.isFollowRedirects());
+                if (request.getConnectTimeout() > 0) {
+                    connection.setConnectTimeout(request.getConnectTimeout());
+                }
+                if (request.getReadTimeout() > 0) {
+                    connection.setReadTimeout(request.getReadTimeout());
+                }
+                for (Map.Entry<String, List<String>> entry : request.getHeaders().entrySet()) {
+                    for (String value : entry.getValue()) {
+                        connection.addRequestProperty(entry.getKey(), value);
+                    }
+                }
+                final byte[] payload = request.getPayload();
+                if (payload != null) {
+                    connection.setDoOutput(true);
+                    connection.setFixedLengthStreamingMode(payload.length);
+                    try (OutputStream os = connection.getOutputStream()) {
+                        os.write(payload);
+                    }
+                }
+
+                final int code = connection.getResponseCode();
+                final InputStream stream = (code >= HttpURLConnection.HTTP_BAD_REQUEST) ? connection.getErrorStream() : connection.getInputStream();
+                // no disconnect on success, reading and closing the stream hands the connection back to JDK's keep-alive cache
+                final byte[] content = readFully(stream);
+                return new Response(code, connection.getURL(), connection.getHeaderFields(), content);
+            } catch (IOException | RuntimeException e) {
+                connection.disconnect();
+                throw e;
+            }
+        }
+
+        private static byte[] readFully(InputStream stream) throws IOException {
+            if (stream == null) {
+                return new byte[0];
+            }
+            try {
+                final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                final byte[] buffer = new byte[8192];
+                int n;
+                while ((n = stream.read(buffer)) != -1) {
+                    baos.write(buffer, 0, n);
+                }
+                return baos.toByteArray();
+            } finally {
+                stream.close();
+            }
+        }
+    }
+
+    public static class Request {
+        private final URL url;
+        private String method = "GET";
+        private final Map<String, List<String>> headers = new LinkedHashMap<>();
+        private byte[] payload;
+        private boolean followRedirects = true;
+        private int connectTimeout;
+        private int readTimeout;
+
+        public Request(URL url) {
+            if (url == null) {
+                throw new IllegalArgumentException("Null url!");
+            }
+            this.url = url;
+        }
+
+        public URL getUrl() {
+            return url;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public void setMethod(String method) {
+            this.method = method;
+        }
+
+        public Map<String, List<String>> getHeaders() {
+            return headers;
+        }
+
+        public void addHeader(String name, String value) {
+            List<String> values = headers.get(name);
+            if (values == null) {
+                values = new ArrayList<>();
+                headers.put(name, values);
+            }
+            values.add(value);
+        }
+
+        public byte[] getPayload() {
+            return payload;
+        }
+
+        public void setPayload(byte[] payload) {
+            this.payload = payload;
+        }
+
+        public boolean isFollowRedirects() {
+            return followRedirects;
+        }
+
+        public void setFollowRedirects(boolean followRedirects) {
+            this.followRedirects = followRedirects;
+        }
+
+        public int getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        public void setConnectTimeout(int connectTimeout) {
+            this.connectTimeout = connectTimeout;
+        }
+
+        public int getReadTimeout() {
+            return readTimeout;
+        }
+
+        public void setReadTimeout(int readTimeout) {
+            this.readTimeout = readTimeout;
+        }
+    }
+
+    public static class Response {
+        private final int responseCode;
+        private final URL finalUrl;
+        private final Map<String, List<String>> headers;
+        private final byte[] content;
+
+        private Response(int responseCode, URL finalUrl, Map<String, List<String>> headers, byte[] content) {
+            this.responseCode = responseCode;
+            this.finalUrl = finalUrl;
+            this.headers = Collections.unmodifiableMap(new LinkedHashMap<>(headers));
+            this.content = content;
+        }
+
+        public int getResponseCode() {
+            return responseCode;
+        }
+
+        public URL getFinalUrl() {
+            return finalUrl;
+        }
+
+        public Map<String, List<String>> getHeaders() {
+            return headers;
+        }
+
+        public byte[] getContent() {
+            return content;
+        }
+    }
+}
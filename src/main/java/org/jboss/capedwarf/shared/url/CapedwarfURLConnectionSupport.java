@@ -0,0 +1,544 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.capedwarf.shared.url;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.net.HttpURLConnection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import javax.net.ssl.HttpsURLConnection;
+
+import org.jboss.capedwarf.shared.compatibility.Compatibility;
+
+/**
+ * Shared state, policy and socket opening calls of CapedwarfHttpURLConnection and CapedwarfHttpsURLConnection.
+ * As the https one has to extend HttpsURLConnection, both forward here and only differ in plain delegation.
+ *
+ * Capedwarf sockets are bypassed only while a call can open a socket;
+ * once the response is in, header access goes straight to the delegate.
+ * If there is a limiter, a lease is taken on first connect, see HttpHostLimiter.
+ *
+ * In streaming mode uploads are sent chunked, or with fixed length if the app set Content-Length,
+ * instead of the JDK buffering the whole body in memory.
+ * With gzip on, we ask for gzip (unless the app set Accept-Encoding) and decode it transparently,
+ * hiding Content-Encoding and Content-Length of the encoded body.
+ *
+ * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
+ */
+final class CapedwarfURLConnectionSupport {
+    private final HttpURLConnection delegate;
+    private final HttpHostLimiter limiter;
+    private final int chunkSize;
+    private final boolean gzip;
+    private volatile HttpHostLimiter.Lease lease;
+    private volatile boolean responded;
+
+    private boolean prepared;
+    private boolean streamingMode;
+    private long contentLength = -1;
+    private boolean gzipRequested;
+
+    private CapedwarfURLConnectionSupport(HttpURLConnection delegate, HttpHostLimiter limiter, int chunkSize, boolean gzip) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+        this.chunkSize = chunkSize;
+        this.gzip = gzip;
+    }
+
+    /**
+     * Wrap JDK's connection, plain delegation.
+     *
+     * @param delegate the JDK connection
+     * @return http or https delegating connection
+     */
+    static HttpURLConnection wrap(HttpURLConnection delegate) {
+        return wrap(delegate, null, 0, false);
+    }
+
+    /**
+     * Wrap JDK's connection.
+     *
+     * @param delegate the JDK connection
+     * @param limiter the limiter, can be null
+     * @param chunkSize upload chunk size, 0 leaves uploads to the JDK
+     * @param gzip do we transparently decode gzip
+     * @return http or https delegating connection
+     */
+    static HttpURLConnection wrap(HttpURLConnection delegate, HttpHostLimiter limiter, int chunkSize, boolean gzip) {
+        final CapedwarfURLConnectionSupport support = new CapedwarfURLConnectionSupport(delegate, limiter, chunkSize, gzip);
+        if (delegate instanceof HttpsURLConnection) {
+            return new CapedwarfHttpsURLConnection((HttpsURLConnection) delegate, support);
+        } else {
+            return new CapedwarfHttpURLConnection(delegate, support);
+        }
+    }
+
+    // --- shared by both connection types, which just forward here
+
+    void connect() throws IOException {
+        enter();
+        try {
+            delegate.connect();
+        } catch (IOException | RuntimeException e) {
+            failed();
+            throw e;
+        } finally {
+            exit();
+        }
+    }
+
+    OutputStream getOutputStream() throws IOException {
+        prepareUpload();
+        enter();
+        try {
+            return delegate.getOutputStream();
+        } catch (IOException | RuntimeException e) {
+            failed();
+            throw e;
+        } finally {
+            exit();
+        }
+    }
+
+    InputStream getInputStream() throws IOException {
+        if (responded) {
+            return wrap(delegate.getInputStream());
+        }
+        enter();
+        try {
+            final InputStream stream = delegate.getInputStream();
+            responded();
+            return wrap(stream);
+        } catch (IOException | RuntimeException e) {
+            if (hasResponse()) {
+                responded(); // e.g. 4xx / 5xx, the app can still read (and we decode) the error stream
+            } else {
+                failed();
+            }
+            throw e;
+        } finally {
+            exit();
+        }
+    }
+
+    int getResponseCode() throws IOException {
+        if (responded) {
+            return delegate.getResponseCode();
+        }
+        enter();
+        try {
+            final int code = delegate.getResponseCode();
+            responded();
+            return code;
+        } catch (IOException | RuntimeException e) {
+            failed();
+            throw e;
+        } finally {
+            exit();
+        }
+    }
+
+    String getResponseMessage() throws IOException {
+        if (responded) {
+            return delegate.getResponseMessage();
+        }
+        enter();
+        try {
+            final String message = delegate.getResponseMessage();
+            responded();
+            return message;
+        } catch (IOException | RuntimeException e) {
+            failed();
+            throw e;
+        } finally {
+            exit();
+        }
+    }
+
+    // header lookups connect if needed, and like the JDK return null if that fails;
+    // other header getters (content type, length, date, ...) go through these.
+    // Index based lookups are not filtered for decoded gzip responses.
+
+    String getHeaderField(String name) {
+        if (responded) {
+            return isHidden(name) ? null : delegate.getHeaderField(name);
+        }
+        try {
+            enter();
+        } catch (IOException e) {
+            return null;
+        }
+        final String value;
+        try {
+            value = responded(delegate.getHeaderField(name));
+        } finally {
+            exit();
+        }
+        return isHidden(name) ? null : value;
+    }
+
+    String getHeaderField(int n) {
+        if (responded) {
+            return delegate.getHeaderField(n);
+        }
+        try {
+            enter();
+        } catch (IOException e) {
+            return null;
+        }
+        try {
+            return responded(delegate.getHeaderField(n));
+        } finally {
+            exit();
+        }
+    }
+
+    String getHeaderFieldKey(int n) {
+        if (responded) {
+            return delegate.getHeaderFieldKey(n);
+        }
+        try {
+            enter();
+        } catch (IOException e) {
+            return null;
+        }
+        try {
+            return responded(delegate.getHeaderFieldKey(n));
+        } finally {
+            exit();
+        }
+    }
+
+    Map<String, List<String>> getHeaderFields() {
+        if (responded) {
+            return filter(delegate.getHeaderFields());
+        }
+        try {
+            enter();
+        } catch (IOException e) {
+            return Collections.emptyMap();
+        }
+        try {
+            final Map<String, List<String>> fields = delegate.getHeaderFields();
+            if (fields.isEmpty() == false) {
+                responded();
+            }
+            return filter(fields);
+        } finally {
+            exit();
+        }
+    }
+
+    private <T> T responded(T value) {
+        if (value != null) {
+            responded(); // we have headers
+        }
+        return value;
+    }
+
+    InputStream getErrorStream() {
+        return wrap(delegate.getErrorStream());
+    }
+
+    void disconnect() {
+        try {
+            delegate.disconnect();
+        } finally {
+            release();
+        }
+    }
+
+    void setFixedLengthStreamingMode(long contentLength) {
+        streamingMode = true;
+        delegate.setFixedLengthStreamingMode(contentLength);
+    }
+
+    void setChunkedStreamingMode(int chunklen) {
+        streamingMode = true;
+        delegate.setChunkedStreamingMode(chunklen);
+    }
+
+    void setRequestProperty(String key, String value) {
+        delegate.setRequestProperty(key, value);
+        requestProperty(key, value);
+    }
+
+    void addRequestProperty(String key, String value) {
+        delegate.addRequestProperty(key, value);
+        requestProperty(key, value);
+    }
+
+    // --- internals
+
+    private void enter() throws IOException {
+        if (prepared == false) {
+            prepare();
+        }
+        Compatibility.enable(Compatibility.Feature.IGNORE_CAPEDWARF_SOCKETS);
+        if (limiter != null && lease == null) {
+            try {
+                acquire();
+            } catch (IOException | RuntimeException e) {
+                Compatibility.disable(Compatibility.Feature.IGNORE_CAPEDWARF_SOCKETS);
+                throw e;
+            }
+        }
+    }
+
+    private void exit() {
+        Compatibility.disable(Compatibility.Feature.IGNORE_CAPEDWARF_SOCKETS);
+    }
+
+    private synchronized void acquire() throws IOException {
+        if (lease == null) {
+            lease = limiter.acquire(delegate.getURL());
+        }
+    }
+
+    /**
+     * Last chance to touch the request, before the first connecting call.
+     */
+    private void prepare() {
+        prepared = true;
+        if (gzip && delegate.getRequestProperty("Accept-Encoding") == null) {
+            delegate.setRequestProperty("Accept-Encoding", "gzip");
+            gzipRequested = true;
+        }
+    }
+
+    private void requestProperty(String key, String value) {
+        if ("Content-Length".equalsIgnoreCase(key)) {
+            try {
+                contentLength = Long.parseLong(value.trim());
+            } catch (RuntimeException e) {
+                contentLength = -1;
+            }
+        }
+    }
+
+    /**
+     * Stream the upload, unless the app already picked a streaming mode.
+     */
+    private void prepareUpload() {
+        if (chunkSize <= 0 || streamingMode || prepared) {
+            return;
+        }
+        streamingMode = true;
+        if (contentLength >= 0) {
+            delegate.setFixedLengthStreamingMode(contentLength);
+        } else {
+            delegate.setChunkedStreamingMode(chunkSize);
+        }
+    }
+
+    /**
+     * Is the response gzip we asked for, and decode.
+     */
+    private boolean isDecoding() {
+        return gzipRequested && responded && "gzip".equalsIgnoreCase(delegate.getContentEncoding());
+    }
+
+    private boolean isHidden(String header) {
+        return header != null && ("Content-Encoding".equalsIgnoreCase(header) || "Content-Length".equalsIgnoreCase(header)) && isDecoding();
+    }
+
+    private Map<String, List<String>> filter(Map<String, List<String>> fields) {
+        if (isDecoding() == false) {
+            return fields;
+        }
+        final Map<String, List<String>> filtered = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> entry : fields.entrySet()) {
+            if (isHidden(entry.getKey()) == false) {
+                filtered.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return filtered;
+    }
+
+    private void responded() {
+        if (responded) {
+            return;
+        }
+        responded = true;
+        if (lease != null && hasBody() == false) {
+            release();
+        }
+    }
+
+    /**
+     * Is there a body the app still has to consume, before the JDK can reuse the connection.
+     * Error bodies count too, by default the JDK's error stream is the live socket stream;
+     * the lease is then returned once that stream is consumed or closed, on disconnect, or by idle reclaim.
+     */
+    private boolean hasBody() {
+        if ("HEAD".equals(delegate.getRequestMethod())) {
+            return false;
+        }
+        final int code;
+        try {
+            code = delegate.getResponseCode();
+        } catch (IOException e) {
+            return false;
+        }
+        if (code < 200 || code == HttpURLConnection.HTTP_NO_CONTENT || code == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            return false;
+        }
+        return delegate.getContentLengthLong() != 0;
+    }
+
+    /**
+     * Did the response arrive, e.g. before the JDK failed getInputStream on an error status.
+     * The JDK remembers both the code and the failure, so this doesn't connect again.
+     */
+    private boolean hasResponse() {
+        try {
+            return delegate.getResponseCode() != -1;
+        } catch (IOException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    private void failed() {
+        release();
+    }
+
+    private void release() {
+        final HttpHostLimiter.Lease current = lease;
+        if (current != null) {
+            current.release();
+        }
+    }
+
+    private InputStream wrap(InputStream stream) {
+        if (stream == null) {
+            return null;
+        }
+        if (isDecoding()) {
+            stream = new GzipDecodingInputStream(stream, chunkSize);
+        }
+        final HttpHostLimiter.Lease current = lease;
+        return (current != null && current.isReleased() == false) ? new LeasedInputStream(stream, current) : stream;
+    }
+
+    /**
+     * Decodes lazily, as bodies can be empty (e.g. HEAD, 204, 304) and have no gzip header.
+     */
+    private static class GzipDecodingInputStream extends FilterInputStream {
+        private final int bufferSize;
+        private boolean started;
+
+        private GzipDecodingInputStream(InputStream in, int bufferSize) {
+            super(in);
+            this.bufferSize = (bufferSize > 0) ? bufferSize : 512;
+        }
+
+        private InputStream decoded() throws IOException {
+            if (started == false) {
+                started = true;
+                final PushbackInputStream pushback = new PushbackInputStream(in, 1);
+                final int b = pushback.read();
+                if (b < 0) {
+                    in = pushback; // empty body
+                } else {
+                    pushback.unread(b);
+                    in = new GZIPInputStream(pushback, bufferSize);
+                }
+            }
+            return in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return decoded().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return decoded().read(b, off, len);
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            return decoded().skip(n);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return started ? in.available() : 0;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the lease once the response is consumed or closed,
+     * which is also when the JDK puts the connection back into its keep-alive cache.
+     */
+    private static class LeasedInputStream extends FilterInputStream {
+        private final HttpHostLimiter.Lease lease;
+
+        private LeasedInputStream(InputStream in, HttpHostLimiter.Lease lease) {
+            super(in);
+            this.lease = lease;
+        }
+
+        private int eof(int n) {
+            if (n < 0) {
+                lease.release();
+            } else {
+                lease.touch();
+            }
+            return n;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return eof(super.read());
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return eof(super.read(b, off, len));
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                lease.release();
+            }
+        }
+    }
+}
@@ -7,17 +7,15 @@ import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLStreamHandler;
 import java.net.URLStreamHandlerFactory;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentHashMap;
-
-import javax.net.ssl.HttpsURLConnection;
 
 import com.google.common.collect.Sets;
 import org.jboss.capedwarf.shared.reflection.MethodInvocation;
-import org.jboss.capedwarf.shared.reflection.ReflectionUtils;
+import org.jboss.capedwarf.shared.reflection.ReflectionHandles;
 import org.jboss.capedwarf.shared.compatibility.Compatibility;
 import org.jboss.capedwarf.shared.components.Key;
 import org.jboss.capedwarf.shared.components.SimpleKey;
@@ -37,40 +35,44 @@ public class CapedwarfURLStreamHandlerFactory implements URLStreamHandlerFactory
     private static final MethodInvocation<HttpURLConnection> openConnectionWithProxy;
 
     static {
-        getURLStreamHandler = ReflectionUtils.cacheMethod(URL.class, "getURLStreamHandler", String.class);
-        openConnectionDirect = ReflectionUtils.cacheMethod(URLStreamHandler.class, "openConnection", URL.class);
-        openConnectionWithProxy = ReflectionUtils.cacheMethod(URLStreamHandler.class, "openConnection", URL.class, Proxy.class);
+        getURLStreamHandler = ReflectionHandles.cacheMethod(URL.class, "getURLStreamHandler", String.class);
+        openConnectionDirect = ReflectionHandles.cacheMethod(URLStreamHandler.class, "openConnection", URL.class);
+        openConnectionWithProxy = ReflectionHandles.cacheMethod(URLStreamHandler.class, "openConnection", URL.class, Proxy.class);
     }
 
-    private static final ThreadLocal<Set<String>> reentered = new ThreadLocal<Set<String>>() {
-        protected Set<String> initialValue() {
-            return new HashSet<>();
-        }
-    };
-
-    private static Map<String, URLStreamHandler> defaultHandlers = new ConcurrentHashMap<>();
+    // immutable, all PROTOCOLS' JDK handlers, resolved once
+    private static volatile Map<String, URLStreamHandler> defaultHandlers;
+    // thread resolving the defaults, its re-entrant calls must get JDK's handlers
+    private static volatile Thread resolving;
 
     public URLStreamHandler createURLStreamHandler(final String protocol) {
         if (PROTOCOLS.contains(protocol) == false)
             return null;
 
-        Set<String> set = reentered.get();
-        try {
-            if (set.add(protocol)) {
-                return URLHack.inLock(new Callable<URLStreamHandler>() {
-                    public URLStreamHandler call() throws Exception {
-                        // fetch defaults
-                        defaultHandlers.put(protocol, getDefaultHandler(protocol));
+        if (defaultHandlers != null) {
+            return HANDLER;
+        }
+        if (resolving == Thread.currentThread()) {
+            return null;
+        }
 
-                        return HANDLER;
+        return URLHack.inLock(new Callable<URLStreamHandler>() {
+            public URLStreamHandler call() throws Exception {
+                if (defaultHandlers == null) {
+                    resolving = Thread.currentThread();
+                    try {
+                        final Map<String, URLStreamHandler> handlers = new HashMap<>();
+                        for (String p : PROTOCOLS) {
+                            handlers.put(p, getDefaultHandler(p));
+                        }
+                        defaultHandlers = Collections.unmodifiableMap(handlers);
+                    } finally {
+                        resolving = null;
                     }
-                });
-            } else {
-                return null;
+                }
+                return HANDLER;
             }
-        } finally {
-            reentered.remove();
-        }
+        });
     }
 
     private URLStreamHandler getDefaultHandler(String protocol) {
@@ -79,14 +81,12 @@ public class CapedwarfURLStreamHandlerFactory implements URLStreamHandlerFactory
         return handler;
     }
 
-    private static boolean isStreamHandlerEnabled() {
-        final Compatibility compatibility = getCompatibility();
+    private static boolean isStreamHandlerEnabled(Compatibility compatibility) {
         return (compatibility.isEnabled(Compatibility.Feature.IGNORE_CAPEDWARF_URL_STREAM_HANDLER) == false);
     }
 
     private static Compatibility getCompatibility() {
-        final CapedwarfApiProxy.Info info = CapedwarfApiProxy.getInfo();
-        final Key<Compatibility> key = new SimpleKey<>(info.getAppId(), info.getModule(), Compatibility.class);
+        final Key<Compatibility> key = SimpleKey.withCurrentApp(Compatibility.class);
         return Compatibility.getInstance(key);
     }
 
@@ -102,11 +102,14 @@ public class CapedwarfURLStreamHandlerFactory implements URLStreamHandlerFactory
             }
 
             if (CapedwarfApiProxy.isCapedwarfApp()) {
-                final Class<? extends HttpURLConnection> exactType = (delegate instanceof HttpsURLConnection) ? HttpsURLConnection.class : HttpURLConnection.class;
-                if (isStreamHandlerEnabled()) {
-                    return CapedwarfURLConnectionProxyFactory.streaming(exactType, delegate);
+                final Compatibility compatibility = getCompatibility();
+                if (isStreamHandlerEnabled(compatibility)) {
+                    final HttpHostLimiter limiter = HttpHostLimiter.isEnabled(compatibility) ? HttpHostLimiter.getInstance(compatibility) : null;
+                    final int chunkSize = (Integer) compatibility.toObject(Compatibility.Feature.URL_CONNECTION_CHUNK_SIZE);
+                    final boolean gzip = compatibility.isEnabled(Compatibility.Feature.URL_CONNECTION_GZIP);
+                    return CapedwarfURLConnectionSupport.wrap(delegate, limiter, chunkSize, gzip);
                 } else {
-                    return CapedwarfURLConnectionProxyFactory.basic(exactType, delegate);
+                    return CapedwarfURLConnectionSupport.wrap(delegate);
                 }
             } else {
                 return delegate;
@@ -0,0 +1,275 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.capedwarf.shared.url;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import org.jboss.capedwarf.shared.compatibility.Compatibility;
+import org.jboss.capedwarf.shared.components.ComponentRegistry;
+import org.jboss.capedwarf.shared.components.Key;
+import org.jboss.capedwarf.shared.servlet.CapedwarfApiProxy;
+
+/**
+ * Per app / module limit of concurrent outbound url connections per host.
+ *
+ * This is not a pool; physical connections are kept alive and reused by the JDK's
+ * HttpURLConnection, as long as the response is consumed and closed. This limiter only
+ * bounds how many connections an app holds per host at once, and tracks usage.
+ *
+ * A lease is taken when the connection first connects and returned once the
+ * response stream hits EOF or is closed, on disconnect, or as soon as the
+ * response turns out to have no body to read (HEAD, 1xx, 204, 304, empty);
+ * error bodies are read like any other.
+ * Hosts and leases idle for longer than the idle timeout are evicted / reclaimed.
+ *
+ * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
+ */
+public final class HttpHostLimiter {
+    private static final Logger log = Logger.getLogger(HttpHostLimiter.class.getName());
+
+    private final ConcurrentMap<String, Host> hosts = new ConcurrentHashMap<>();
+    private final int maxPerHost;
+    private final long acquireTimeout;
+    private final long idleTimeout;
+    private final AtomicLong nextEviction;
+
+    private final AtomicLong leases = new AtomicLong();
+    private final AtomicLong waits = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong reclaimed = new AtomicLong();
+    private final AtomicLong evictedHosts = new AtomicLong();
+
+    HttpHostLimiter(int maxPerHost, int acquireTimeoutSeconds, int idleTimeoutSeconds) {
+        if (maxPerHost <= 0) {
+            throw new IllegalArgumentException("Max connections per host must be positive: " + maxPerHost);
+        }
+        this.maxPerHost = maxPerHost;
+        this.acquireTimeout = TimeUnit.SECONDS.toNanos(acquireTimeoutSeconds);
+        this.idleTimeout = TimeUnit.SECONDS.toNanos(idleTimeoutSeconds);
+        this.nextEviction = new AtomicLong(System.nanoTime() + idleTimeout);
+    }
+
+    static boolean isEnabled(Compatibility compatibility) {
+        return compatibility.isEnabled(Compatibility.Feature.URL_CONNECTION_MAX_PER_HOST);
+    }
+
+    /**
+     * Get current app's limiter.
+     *
+     * @param compatibility the app's compatibility, to configure a new limiter
+     * @return the limiter
+     */
+    static HttpHostLimiter getInstance(Compatibility compatibility) {
+        Key<HttpHostLimiter> key = CapedwarfApiProxy.getInfo().getKey(HttpHostLimiter.class);
+        ComponentRegistry registry = ComponentRegistry.getInstance();
+        HttpHostLimiter limiter = registry.getComponent(key);
+        if (limiter == null) {
+            limiter = new HttpHostLimiter(
+                (Integer) compatibility.toObject(Compatibility.Feature.URL_CONNECTION_MAX_PER_HOST),
+                (Integer) compatibility.toObject(Compatibility.Feature.URL_CONNECTION_ACQUIRE_TIMEOUT),
+                (Integer) compatibility.toObject(Compatibility.Feature.URL_CONNECTION_IDLE_TIMEOUT)
+            );
+            HttpHostLimiter previous = registry.putIfAbsent(key, limiter);
+            if (previous != null) {
+                limiter = previous;
+            }
+        }
+        return limiter;
+    }
+
+    static String toHostKey(URL url) {
+        final int port = (url.getPort() != -1) ? url.getPort() : url.getDefaultPort();
+        return url.getProtocol() + "://" + url.getHost().toLowerCase() + ":" + port;
+    }
+
+    /**
+     * Lease a connection slot for url's host, waiting up to acquire timeout.
+     *
+     * @param url the url
+     * @return the lease
+     * @throws IOException if no slot frees up in time
+     */
+    Lease acquire(URL url) throws IOException {
+        evictIdle();
+
+        final String key = toHostKey(url);
+        Host host = hosts.get(key);
+        if (host == null) {
+            host = new Host(maxPerHost);
+            Host previous = hosts.putIfAbsent(key, host);
+            if (previous != null) {
+                host = previous;
+            }
+        }
+
+        if (host.permits.tryAcquire() == false) {
+            waits.incrementAndGet();
+            try {
+                if (host.permits.tryAcquire(acquireTimeout, TimeUnit.NANOSECONDS) == false) {
+                    timeouts.incrementAndGet();
+                    throw new IOException(String.format("No free connection to %s after %s seconds, max per host is %s.", key, TimeUnit.NANOSECONDS.toSeconds(acquireTimeout), maxPerHost));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(String.format("Interrupted while waiting for connection to %s.", key));
+            }
+        }
+
+        leases.incrementAndGet();
+        final Lease lease = new Lease(host);
+        host.leases.add(lease);
+        return lease;
+    }
+
+    /**
+     * Drop idle hosts and reclaim leases nobody touched within idle timeout,
+     * so leaked (never closed) connections cannot starve a host forever.
+     * At most one caller sweeps per idle timeout period.
+     */
+    void evictIdle() {
+        final long now = System.nanoTime();
+        final long next = nextEviction.get();
+        if (now - next < 0 || nextEviction.compareAndSet(next, now + idleTimeout) == false) {
+            return;
+        }
+
+        for (Map.Entry<String, Host> entry : hosts.entrySet()) {
+            final Host host = entry.getValue();
+            for (Lease lease : host.leases) {
+                if (now - lease.lastUsed > idleTimeout && lease.release()) {
+                    reclaimed.incrementAndGet();
+                    log.warning(String.format("Reclaimed idle connection lease to %s, make sure url connection streams are closed.", entry.getKey()));
+                }
+            }
+            if (host.leases.isEmpty() && now - host.lastUsed > idleTimeout && hosts.remove(entry.getKey(), host)) {
+                evictedHosts.incrementAndGet();
+            }
+        }
+    }
+
+    // --- stats
+
+    public int getMaxPerHost() {
+        return maxPerHost;
+    }
+
+    public long getLeases() {
+        return leases.get();
+    }
+
+    public long getWaits() {
+        return waits.get();
+    }
+
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    public long getReclaimed() {
+        return reclaimed.get();
+    }
+
+    public long getEvictedHosts() {
+        return evictedHosts.get();
+    }
+
+    /**
+     * Currently leased connections per host.
+     *
+     * @return host -> leased connections
+     */
+    public Map<String, Integer> getInUse() {
+        final Map<String, Integer> map = new TreeMap<>();
+        for (Map.Entry<String, Host> entry : hosts.entrySet()) {
+            map.put(entry.getKey(), entry.getValue().leases.size());
+        }
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return "HttpHostLimiter[maxPerHost=" + maxPerHost +
+            ", leases=" + getLeases() +
+            ", waits=" + getWaits() +
+            ", timeouts=" + getTimeouts() +
+            ", reclaimed=" + getReclaimed() +
+            ", evictedHosts=" + getEvictedHosts() +
+            ", inUse=" + getInUse() + "]";
+    }
+
+    private static final class Host {
+        private final Semaphore permits;
+        private final Set<Lease> leases = Collections.newSetFromMap(new ConcurrentHashMap<Lease, Boolean>());
+        private volatile long lastUsed = System.nanoTime();
+
+        private Host(int max) {
+            this.permits = new Semaphore(max);
+        }
+    }
+
+    static final class Lease {
+        private final Host host;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile long lastUsed = System.nanoTime();
+
+        private Lease(Host host) {
+            this.host = host;
+        }
+
+        void touch() {
+            lastUsed = System.nanoTime();
+        }
+
+        boolean isReleased() {
+            return released.get();
+        }
+
+        /**
+         * Return the slot, only the first call counts.
+         *
+         * @return true if this call released the lease
+         */
+        boolean release() {
+            if (released.compareAndSet(false, true)) {
+                host.leases.remove(this);
+                host.lastUsed = System.nanoTime();
+                host.permits.release();
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2014, Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags. See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+
+package org.jboss.capedwarf.shared.util;
+
+/**
+ * Counting thread local set of enum constants, kept as a bitmask.
+ * Only enums with up to 64 constants are supported.
+ *
+ * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
+ */
+public class CountingBitsThreadLocal<E extends Enum<E>> {
+    private final int size;
+    private final ThreadLocal<Bits> bits;
+
+    public CountingBitsThreadLocal(Class<E> enumType) {
+        size = enumType.getEnumConstants().length;
+        if (size > Long.SIZE) {
+            throw new IllegalArgumentException("Too many constants in " + enumType.getName() + ": " + size);
+        }
+        bits = new ThreadLocal<>();
+    }
+
+    /**
+     * Get current thread's bitmask, indexed by ordinal.
+     *
+     * @return the bitmask
+     */
+    public long getBits() {
+        final Bits current = bits.get();
+        return (current != null) ? current.mask : 0L;
+    }
+
+    /**
+     * Has value.
+     *
+     * @param value the value
+     * @return true if exists, false otherwise
+     */
+    public boolean hasValue(E value) {
+        return (getBits() & (1L << value.ordinal())) != 0;
+    }
+
+    /**
+     * Add value.
+     *
+     * @param value the value
+     */
+    public void add(E value) {
+        Bits current = bits.get();
+        if (current == null) {
+            current = new Bits(size);
+            bits.set(current);
+        }
+        final int i = value.ordinal();
+        if (current.counts[i]++ == 0) {
+            current.mask |= (1L << i);
+        }
+    }
+
+    /**
+     * Remove value.
+     *
+     * @param value the value
+     */
+    public void remove(E value) {
+        final Bits current = bits.get();
+        if (current == null) {
+            return;
+        }
+        final int i = value.ordinal();
+        if (current.counts[i] > 0 && --current.counts[i] == 0) {
+            current.mask &= ~(1L << i);
+            if (current.mask == 0) {
+                bits.remove();
+            }
+        }
+    }
+
+    private static class Bits {
+        private long mask;
+        private final int[] counts;
+
+        private Bits(int size) {
+            counts = new int[size];
+        }
+    }
+}
@@ -27,7 +27,9 @@ import java.util.Map;
 
 /**
  * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
+ * @deprecated use CountingBitsThreadLocal for enum values, Compatibility no longer uses this
  */
+@Deprecated
 public class CountingMapThreadLocal<T> {
     private final ThreadLocal<Map<T, Integer>> map = new ThreadLocal<>();
 
@@ -0,0 +1,113 @@
+/*
+ *
+ *  * JBoss, Home of Professional Open Source.
+ *  * Copyright 2011, Red Hat, Inc., and individual contributors
+ *  * as indicated by the @author tags. See the copyright.txt file in the
+ *  * distribution for a full listing of individual contributors.
+ *  *
+ *  * This is free software; you can redistribute it and/or modify it
+ *  * under the terms of the GNU Lesser General Public License as
+ *  * published by the Free Software Foundation; either version 2.1 of
+ *  * the License, or (at your option) any later version.
+ *  *
+ *  * This software is distributed in the hope that it will be useful,
+ *  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *  * Lesser General Public License for more details.
+ *  *
+ *  * You should have received a copy of the GNU Lesser General Public
+ *  * License along with this software; if not, write to the Free
+ *  * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ *  * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+
+package org.jboss.test.capedwarf.shared.config.test;
+
+import java.io.ByteArrayInputStream;
+
+import org.jboss.capedwarf.shared.config.QueueXml;
+import org.jboss.capedwarf.shared.config.QueueXmlParser;
+import org.jboss.capedwarf.shared.jms.QueueLimiter;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
+ */
+public class QueueXmlParserTest {
+
+    @Test
+    public void testParse() throws Exception {
+        String xml = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
+            "<queue-entries>\n" +
+            "    <queue>\n" +
+            "        <name>fast</name>\n" +
+            "        <rate>120/m</rate>\n" +
+            "        <bucket-size>10</bucket-size>\n" +
+            "        <max-concurrent-requests>4</max-concurrent-requests>\n" +
+            "        <retry-parameters>\n" +
+            "            <task-retry-limit>7</task-retry-limit>\n" +
+            "            <task-age-limit>2d</task-age-limit>\n" +
+            "            <min-backoff-seconds>10</min-backoff-seconds>\n" +
+            "            <max-backoff-seconds>200</max-backoff-seconds>\n" +
+            "            <max-doublings>3</max-doublings>\n" +
+            "        </retry-parameters>\n" +
+            "    </queue>\n" +
+            "    <queue>\n" +
+            "        <name>pull</name>\n" +
+            "        <mode>pull</mode>\n" +
+            "    </queue>\n" +
+            "</queue-entries>";
+
+        QueueXml queueXml = QueueXmlParser.parse(new ByteArrayInputStream(xml.getBytes()));
+
+        QueueXml.Queue fast = queueXml.getQueues().get("fast");
+        Assert.assertNotNull(fast);
+        Assert.assertEquals(QueueXml.Mode.PUSH, fast.getMode());
+        Assert.assertEquals(2.0, fast.getRate(), 0.0001);
+        Assert.assertEquals(10, fast.getBucketSize());
+        Assert.assertEquals(4, fast.getMaxConcurrentRequests());
+
+        QueueXml.RetryParameters rp = fast.getRetryParameters();
+        Assert.assertEquals(7, rp.getTaskRetryLimit());
+        Assert.assertEquals(2 * 24 * 60 * 60, rp.getTaskAgeLimit());
+        Assert.assertEquals(10.0, rp.getMinBackoffSeconds(), 0.0001);
+        Assert.assertEquals(200.0, rp.getMaxBackoffSeconds(), 0.0001);
+        Assert.assertEquals(3, rp.getMaxDoublings());
+        Assert.assertEquals(10.0, rp.getBackoffSeconds(1), 0.0001);
+        Assert.assertEquals(80.0, rp.getBackoffSeconds(4), 0.0001);
+        Assert.assertEquals(160.0, rp.getBackoffSeconds(5), 0.0001);
+        Assert.assertEquals(200.0, rp.getBackoffSeconds(6), 0.0001);
+
+        QueueXml.Queue pull = queueXml.getQueues().get("pull");
+        Assert.assertNotNull(pull);
+        Assert.assertEquals(QueueXml.Mode.PULL, pull.getMode());
+        Assert.assertEquals(5.0, pull.getRate(), 0.0001);
+        Assert.assertEquals(5, pull.getBucketSize());
+        Assert.assertEquals(0, pull.getMaxConcurrentRequests());
+        Assert.assertEquals(-1, pull.getRetryParameters().getTaskRetryLimit());
+    }
+
+    @Test
+    public void testLimiterForQueue() throws Exception {
+        String xml = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
+            "<queue-entries>\n" +
+            "    <queue>\n" +
+            "        <name>slow</name>\n" +
+            "        <rate>60/m</rate>\n" +
+            "        <bucket-size>2</bucket-size>\n" +
+            "        <max-concurrent-requests>1</max-concurrent-requests>\n" +
+            "    </queue>\n" +
+            "</queue-entries>";
+
+        QueueXml queueXml = QueueXmlParser.parse(new ByteArrayInputStream(xml.getBytes()));
+        QueueLimiter limiter = QueueLimiter.forQueue(queueXml.getQueues().get("slow"));
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertFalse(limiter.tryAcquire()); // max concurrent
+        limiter.release();
+        Assert.assertTrue(limiter.tryAcquire()); // second token of the bucket
+        limiter.release();
+        Assert.assertFalse(limiter.tryAcquire()); // bucket empty
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ *
+ *  * JBoss, Home of Professional Open Source.
+ *  * Copyright 2011, Red Hat, Inc., and individual contributors
+ *  * as indicated by the @author tags. See the copyright.txt file in the
+ *  * distribution for a full listing of individual contributors.
+ *  *
+ *  * This is free software; you can redistribute it and/or modify it
+ *  * under the terms of the GNU Lesser General Public License as
+ *  * published by the Free Software Foundation; either version 2.1 of
+ *  * the License, or (at your option) any later version.
+ *  *
+ *  * This software is distributed in the hope that it will be useful,
+ *  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *  * Lesser General Public License for more details.
+ *  *
+ *  * You should have received a copy of the GNU Lesser General Public
+ *  * License along with this software; if not, write to the Free
+ *  * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ *  * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+
+package org.jboss.test.capedwarf.shared.jms.test;
+
+import java.util.concurrent.TimeUnit;
+
+import org.jboss.capedwarf.shared.jms.QueueLimiter;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
+ */
+public class QueueLimiterTest {
+
+    @Test
+    public void testBurstUpToBucketSize() throws Exception {
+        QueueLimiter limiter = new QueueLimiter(1, 3, 0);
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertFalse(limiter.tryAcquire());
+        long delay = limiter.getDelayNanos();
+        Assert.assertTrue(delay > 0);
+        Assert.assertTrue(delay <= TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Test
+    public void testRefill() throws Exception {
+        QueueLimiter limiter = new QueueLimiter(100, 1, 0); // one token per 10ms
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertFalse(limiter.tryAcquire());
+        long delay = limiter.getDelayNanos();
+        Assert.assertTrue(delay > 0);
+        Assert.assertTrue(delay <= TimeUnit.MILLISECONDS.toNanos(10));
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(delay) + 100); // sleep never returns early, wide margin anyway
+        Assert.assertEquals(0, limiter.getDelayNanos());
+        Assert.assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    public void testMaxConcurrent() throws Exception {
+        QueueLimiter limiter = new QueueLimiter(Double.POSITIVE_INFINITY, 1, 2);
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertFalse(limiter.tryAcquire());
+        Assert.assertEquals(2, limiter.getInFlight());
+        limiter.release();
+        Assert.assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    public void testRetryDelayWithoutSlot() throws Exception {
+        QueueLimiter limiter = new QueueLimiter(Double.POSITIVE_INFINITY, 1, 1);
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertFalse(limiter.tryAcquire());
+        Assert.assertEquals(0, limiter.getDelayNanos());
+        Assert.assertTrue(limiter.getRetryDelayNanos() > 0);
+        limiter.release();
+        Assert.assertEquals(0, limiter.getRetryDelayNanos());
+    }
+
+    @Test
+    public void testNoTokenKeepsNoSlot() throws Exception {
+        QueueLimiter limiter = new QueueLimiter(1, 1, 5);
+        Assert.assertTrue(limiter.tryAcquire());
+        Assert.assertFalse(limiter.tryAcquire());
+        Assert.assertEquals(1, limiter.getInFlight());
+    }
+
+    @Test
+    public void testPaused() throws Exception {
+        QueueLimiter limiter = new QueueLimiter(0, 5, 0);
+        Assert.assertTrue(limiter.isPaused());
+        Assert.assertFalse(limiter.tryAcquire());
+        Assert.assertEquals(0, limiter.getInFlight());
+        Assert.assertTrue(limiter.getDelayNanos() > 0);
+    }
+
+    @Test
+    public void testUnlimited() throws Exception {
+        QueueLimiter limiter = new QueueLimiter(Double.POSITIVE_INFINITY, 1, 0);
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertTrue(limiter.tryAcquire());
+        }
+        Assert.assertEquals(0, limiter.getDelayNanos());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRate() throws Exception {
+        new QueueLimiter(-1, 1, 0);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ *
+ *  * JBoss, Home of Professional Open Source.
+ *  * Copyright 2011, Red Hat, Inc., and individual contributors
+ *  * as indicated by the @author tags. See the copyright.txt file in the
+ *  * distribution for a full listing of individual contributors.
+ *  *
+ *  * This is free software; you can redistribute it and/or modify it
+ *  * under the terms of the GNU Lesser General Public License as
+ *  * published by the Free Software Foundation; either version 2.1 of
+ *  * the License, or (at your option) any later version.
+ *  *
+ *  * This software is distributed in the hope that it will be useful,
+ *  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *  * Lesser General Public License for more details.
+ *  *
+ *  * You should have received a copy of the GNU Lesser General Public
+ *  * License along with this software; if not, write to the Free
+ *  * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ *  * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+
+package org.jboss.test.capedwarf.shared.jms.test;
+
+import java.util.Arrays;
+
+import org.jboss.capedwarf.shared.jms.ServletPathMatcher;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
+ */
+public class ServletPathMatcherTest {
+
+    private static ServletPathMatcher matcher(String... mappings) {
+        return new ServletPathMatcher(Arrays.asList(mappings));
+    }
+
+    @Test
+    public void testExactBeforePrefix() throws Exception {
+        ServletPathMatcher matcher = matcher("/tasks/*", "/tasks/run");
+        Assert.assertEquals("/tasks/run", matcher.match("/tasks/run"));
+        Assert.assertEquals("/tasks", matcher.match("/tasks/other"));
+        Assert.assertEquals("/tasks", matcher.match("/tasks"));
+    }
+
+    @Test
+    public void testLongestPrefix() throws Exception {
+        ServletPathMatcher matcher = matcher("/a/*", "/a/b/*");
+        Assert.assertEquals("/a/b", matcher.match("/a/b/c"));
+        Assert.assertEquals("/a", matcher.match("/a/bc"));
+        Assert.assertEquals("/a", matcher.match("/a/x/y"));
+    }
+
+    @Test
+    public void testPrefixBeforeExtension() throws Exception {
+        ServletPathMatcher matcher = matcher("*.jsp", "/admin/*");
+        Assert.assertEquals("/admin", matcher.match("/admin/index.jsp"));
+        Assert.assertEquals("/index.jsp", matcher.match("/index.jsp"));
+        Assert.assertNull(matcher.match("/index.jspx"));
+        Assert.assertNull(matcher.match("/dir.jsp/index"));
+    }
+
+    @Test
+    public void testExtensionBeforeDefault() throws Exception {
+        ServletPathMatcher matcher = matcher("/", "*.do");
+        Assert.assertEquals("/x/y.do", matcher.match("/x/y.do"));
+        Assert.assertEquals("/x/y", matcher.match("/x/y"));
+    }
+
+    @Test
+    public void testRootPrefix() throws Exception {
+        ServletPathMatcher matcher = matcher("/*", "/exact");
+        Assert.assertEquals("", matcher.match("/foo/bar"));
+        Assert.assertEquals("", matcher.match("/"));
+        Assert.assertEquals("/exact", matcher.match("/exact"));
+    }
+
+    @Test
+    public void testContextRoot() throws Exception {
+        ServletPathMatcher matcher = matcher("");
+        Assert.assertEquals("", matcher.match("/"));
+        Assert.assertNull(matcher.match("/foo"));
+    }
+
+    @Test
+    public void testNoMatch() throws Exception {
+        Assert.assertNull(matcher("/a/*", "*.do").match("/b"));
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ *
+ *  * JBoss, Home of Professional Open Source.
+ *  * Copyright 2011, Red Hat, Inc., and individual contributors
+ *  * as indicated by the @author tags. See the copyright.txt file in the
+ *  * distribution for a full listing of individual contributors.
+ *  *
+ *  * This is free software; you can redistribute it and/or modify it
+ *  * under the terms of the GNU Lesser General Public License as
+ *  * published by the Free Software Foundation; either version 2.1 of
+ *  * the License, or (at your option) any later version.
+ *  *
+ *  * This software is distributed in the hope that it will be useful,
+ *  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *  * Lesser General Public License for more details.
+ *  *
+ *  * You should have received a copy of the GNU Lesser General Public
+ *  * License along with this software; if not, write to the Free
+ *  * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ *  * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+
+package org.jboss.test.capedwarf.shared.reflection.test;
+
+import java.lang.reflect.Method;
+
+import org.jboss.capedwarf.shared.reflection.MethodInvocation;
+import org.jboss.capedwarf.shared.reflection.ReflectionUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * MemberCache is package-private, so it's driven through ReflectionUtils itself.
+ *
+ * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
+ */
+public class MemberCacheTest {
+    private static final String MEMBER_CACHE = "org.jboss.capedwarf.shared.reflection.MemberCache";
+
+    private Object cache;
+    private Object notFound;
+    private MethodInvocation<Object> get;
+    private MethodInvocation<Object> put;
+    private MethodInvocation<Object> release;
+
+    @Before
+    public void setUp() throws Exception {
+        Class<?> clazz = Class.forName(MEMBER_CACHE);
+        cache = ReflectionUtils.newInstance(clazz);
+        notFound = ReflectionUtils.getFieldValue(clazz, "NOT_FOUND");
+        get = ReflectionUtils.cacheTargetMethod(cache, "get", Class.class, String.class, Class[].class);
+        put = ReflectionUtils.cacheTargetMethod(cache, "put", Class.class, String.class, Class[].class, Object.class);
+        release = ReflectionUtils.cacheTargetMethod(cache, "release", ClassLoader.class);
+    }
+
+    @Test
+    public void testPutAndGet() throws Exception {
+        Method method = String.class.getMethod("indexOf", String.class);
+        Class[] types = new Class[]{String.class};
+
+        Assert.assertNull(get.invoke(String.class, "indexOf", types));
+        put.invoke(String.class, "indexOf", types, method);
+        Assert.assertSame(method, get.invoke(String.class, "indexOf", new Class[]{String.class}));
+        Assert.assertNull(get.invoke(String.class, "indexOf", new Class[]{Integer.TYPE}));
+        Assert.assertNull(get.invoke(Object.class, "indexOf", types));
+    }
+
+    @Test
+    public void testNotFound() throws Exception {
+        put.invoke(MemberCacheTest.class, "missing", null, notFound);
+        Assert.assertSame(notFound, get.invoke(MemberCacheTest.class, "missing", null));
+    }
+
+    @Test
+    public void testKeyTypesAreCopied() throws Exception {
+        Class[] types = new Class[]{String.class};
+        put.invoke(String.class, "indexOf", types, String.class.getMethod("indexOf", String.class));
+        types[0] = Integer.TYPE;
+        Assert.assertNotNull(get.invoke(String.class, "indexOf", new Class[]{String.class}));
+        Assert.assertNull(get.invoke(String.class, "indexOf", types));
+    }
+
+    @Test
+    public void testRelease() throws Exception {
+        put.invoke(MemberCacheTest.class, "missing", null, notFound);
+        put.invoke(String.class, "length", new Class[0], String.class.getMethod("length"));
+
+        release.invoke(MemberCacheTest.class.getClassLoader());
+        Assert.assertNull(get.invoke(MemberCacheTest.class, "missing", null));
+        // bootstrap segment is untouched
+        Assert.assertNotNull(get.invoke(String.class, "length", new Class[0]));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOnlyMembers() throws Exception {
+        put.invoke(String.class, "length", new Class[0], "not a member");
+    }
+}
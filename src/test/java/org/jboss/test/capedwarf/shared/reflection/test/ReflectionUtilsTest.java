@@ -0,0 +1,138 @@
+/*
+ *
+ *  * JBoss, Home of Professional Open Source.
+ *  * Copyright 2011, Red Hat, Inc., and individual contributors
+ *  * as indicated by the @author tags. See the copyright.txt file in the
+ *  * distribution for a full listing of individual contributors.
+ *  *
+ *  * This is free software; you can redistribute it and/or modify it
+ *  * under the terms of the GNU Lesser General Public License as
+ *  * published by the Free Software Foundation; either version 2.1 of
+ *  * the License, or (at your option) any later version.
+ *  *
+ *  * This software is distributed in the hope that it will be useful,
+ *  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *  * Lesser General Public License for more details.
+ *  *
+ *  * You should have received a copy of the GNU Lesser General Public
+ *  * License along with this software; if not, write to the Free
+ *  * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ *  * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+
+package org.jboss.test.capedwarf.shared.reflection.test;
+
+import java.lang.reflect.InvocationTargetException;
+
+import org.jboss.capedwarf.shared.reflection.MethodInvocation;
+import org.jboss.capedwarf.shared.reflection.ReflectionHandles;
+import org.jboss.capedwarf.shared.reflection.ReflectionUtils;
+import org.jboss.capedwarf.shared.reflection.TargetInvocation;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
+ */
+public class ReflectionUtilsTest {
+
+    @Test
+    public void testInheritedMethod() throws Exception {
+        Assert.assertEquals("base", ReflectionUtils.invokeInstanceMethod(new Child(), "hidden"));
+        Assert.assertEquals(3, ReflectionUtils.invokeStaticMethod(Base.class, "add", new Class[]{Integer.TYPE, Integer.TYPE}, new Object[]{1, 2}));
+    }
+
+    @Test
+    public void testMethodMissIsCached() throws Exception {
+        Object methods = ReflectionUtils.getFieldValue(ReflectionUtils.class, "methods");
+        MethodInvocation<Object> get = ReflectionUtils.cacheTargetMethod(methods, "get", Class.class, String.class, Class[].class);
+        Object notFound = ReflectionUtils.getFieldValue(Class.forName("org.jboss.capedwarf.shared.reflection.MemberCache"), "NOT_FOUND");
+
+        Class[] types = new Class[]{String.class};
+        Assert.assertNull(get.invoke(Child.class, "noSuchMethod", types));
+        for (int i = 0; i < 2; i++) {
+            try {
+                ReflectionUtils.cacheMethod(Child.class, "noSuchMethod", types);
+                Assert.fail("Should not be here.");
+            } catch (IllegalStateException expected) {
+            }
+            Assert.assertSame(notFound, get.invoke(Child.class, "noSuchMethod", types));
+        }
+        Assert.assertNotNull(ReflectionUtils.optionalMethod(Child.class, "noSuchMethod", types));
+    }
+
+    @Test
+    public void testFieldMissIsCached() throws Exception {
+        Object fields = ReflectionUtils.getFieldValue(ReflectionUtils.class, "fields");
+        MethodInvocation<Object> get = ReflectionUtils.cacheTargetMethod(fields, "get", Class.class, String.class, Class[].class);
+        try {
+            ReflectionUtils.getFieldValue(new Child(), "noSuchField");
+            Assert.fail("Should not be here.");
+        } catch (IllegalStateException expected) {
+        }
+        Assert.assertNotNull(get.invoke(Child.class, "noSuchField", null));
+        Assert.assertEquals("value", ReflectionUtils.getFieldValue(new Child(), "field"));
+    }
+
+    @Test
+    public void testTargetInvocationWrapsTargetException() throws Exception {
+        TargetInvocation<Object> reflective = ReflectionUtils.cacheInvocation(Base.class, "fail");
+        TargetInvocation<Object> handle = ReflectionHandles.cacheInvocation(Base.class, "fail");
+        for (TargetInvocation<Object> invocation : new TargetInvocation[]{reflective, handle}) {
+            try {
+                invocation.invoke(new Child());
+                Assert.fail("Should not be here.");
+            } catch (InvocationTargetException e) {
+                Assert.assertTrue(e.getCause() instanceof UnsupportedOperationException);
+            }
+        }
+        Assert.assertEquals("base", ReflectionHandles.cacheInvocation(Base.class, "hidden").invoke(new Child()));
+    }
+
+    @Test
+    public void testTargetInvocationChecksArguments() throws Exception {
+        Class[] types = new Class[]{Long.TYPE, String.class};
+        Object[][] invalid = new Object[][]{{null, "x"}, {"1", "x"}, {1L, 2}, {1.0, "x"}};
+        for (Object[] args : invalid) {
+            TargetInvocation<Object> reflective = ReflectionUtils.cacheInvocation(Base.class, "concat", types, args);
+            TargetInvocation<Object> handle = ReflectionHandles.cacheInvocation(Base.class, "concat", types, args);
+            for (TargetInvocation<Object> invocation : new TargetInvocation[]{reflective, handle}) {
+                try {
+                    invocation.invoke(new Child());
+                    Assert.fail("Should not be here.");
+                } catch (IllegalArgumentException expected) {
+                }
+            }
+        }
+        Object[][] valid = new Object[][]{{1L, "x"}, {1, "x"}, {'\u0001', null}};
+        for (Object[] args : valid) {
+            Assert.assertEquals(ReflectionUtils.cacheInvocation(Base.class, "concat", types, args).invoke(new Child()),
+                ReflectionHandles.cacheInvocation(Base.class, "concat", types, args).invoke(new Child()));
+        }
+    }
+
+    private static class Base {
+        private String field = "value";
+
+        private String hidden() {
+            return "base";
+        }
+
+        private static int add(int x, int y) {
+            return x + y;
+        }
+
+        private String concat(long x, String y) {
+            return x + y;
+        }
+
+        private void fail() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class Child extends Base {
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ *
+ *  * JBoss, Home of Professional Open Source.
+ *  * Copyright 2011, Red Hat, Inc., and individual contributors
+ *  * as indicated by the @author tags. See the copyright.txt file in the
+ *  * distribution for a full listing of individual contributors.
+ *  *
+ *  * This is free software; you can redistribute it and/or modify it
+ *  * under the terms of the GNU Lesser General Public License as
+ *  * published by the Free Software Foundation; either version 2.1 of
+ *  * the License, or (at your option) any later version.
+ *  *
+ *  * This software is distributed in the hope that it will be useful,
+ *  * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *  * Lesser General Public License for more details.
+ *  *
+ *  * You should have received a copy of the GNU Lesser General Public
+ *  * License along with this software; if not, write to the Free
+ *  * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ *  * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ *
+ */
+
+package org.jboss.test.capedwarf.shared.url.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.jboss.capedwarf.shared.reflection.ReflectionUtils;
+import org.jboss.capedwarf.shared.url.HttpHostLimiter;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * CapedwarfURLConnectionSupport is package-private, so connections are wrapped through ReflectionUtils.
+ *
+ * @author <a href="mailto:ales.justin@jboss.org">Ales Justin</a>
+ */
+public class CapedwarfURLConnectionSupportTest {
+    private static final String SUPPORT = "org.jboss.capedwarf.shared.url.CapedwarfURLConnectionSupport";
+
+    private HttpServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                final int code = exchange.getRequestURI().getPath().startsWith("/error") ? 500 : 200;
+                final byte[] body = (code == 200 ? "hello" : "oops").getBytes("UTF-8");
+                if ("gzip".equals(exchange.getRequestHeaders().getFirst("Accept-Encoding"))) {
+                    final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                    try (GZIPOutputStream gzip = new GZIPOutputStream(baos)) {
+                        gzip.write(body);
+                    }
+                    exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+                    send(exchange, code, baos.toByteArray());
+                } else {
+                    send(exchange, code, body);
+                }
+            }
+        });
+        server.start();
+    }
+
+    private static void send(HttpExchange exchange, int code, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(code, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop(0);
+    }
+
+    private HttpURLConnection open(String path) throws Exception {
+        return open(path, null);
+    }
+
+    private HttpURLConnection open(String path, HttpHostLimiter limiter) throws Exception {
+        final URL url = new URL("http://localhost:" + server.getAddress().getPort() + path);
+        final HttpURLConnection delegate = (HttpURLConnection) url.openConnection();
+        final Class<?> support = Class.forName(SUPPORT);
+        return (HttpURLConnection) ReflectionUtils.invokeStaticMethod(support, "wrap",
+            new Class[]{HttpURLConnection.class, HttpHostLimiter.class, Integer.TYPE, Boolean.TYPE},
+            new Object[]{delegate, limiter, 0, true});
+    }
+
+    private static String read(InputStream stream) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try {
+            int b;
+            while ((b = stream.read()) != -1) {
+                baos.write(b);
+            }
+        } finally {
+            stream.close();
+        }
+        return baos.toString("UTF-8");
+    }
+
+    @Test
+    public void testGzipBody() throws Exception {
+        HttpURLConnection connection = open("/ok");
+        Assert.assertEquals("hello", read(connection.getInputStream()));
+        Assert.assertNull(connection.getHeaderField("Content-Encoding"));
+    }
+
+    @Test
+    public void testGzipErrorBody() throws Exception {
+        HttpURLConnection connection = open("/error");
+        try {
+            connection.getInputStream();
+            Assert.fail("Expected IOException on 500");
+        } catch (IOException expected) {
+            Assert.assertEquals("oops", read(connection.getErrorStream()));
+        }
+        Assert.assertEquals(500, connection.getResponseCode());
+        Assert.assertNull(connection.getHeaderField("Content-Encoding"));
+    }
+
+    @Test
+    public void testErrorBodyHoldsLease() throws Exception {
+        HttpHostLimiter limiter = ReflectionUtils.newInstance(HttpHostLimiter.class, new Class[]{Integer.TYPE, Integer.TYPE, Integer.TYPE}, new Object[]{2, 1, 60});
+        HttpURLConnection connection = open("/error", limiter);
+        Assert.assertEquals(500, connection.getResponseCode());
+        Assert.assertEquals(Integer.valueOf(1), limiter.getInUse().values().iterator().next());
+        Assert.assertEquals("oops", read(connection.getErrorStream()));
+        Assert.assertEquals(Integer.valueOf(0), limiter.getInUse().values().iterator().next());
+    }
+}